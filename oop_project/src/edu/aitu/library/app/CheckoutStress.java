@@ -0,0 +1,190 @@
+package edu.aitu.library.app;
+
+import edu.aitu.library.data.DB;
+import edu.aitu.library.data.SchemaInitializer;
+import edu.aitu.library.exception.LibraryException;
+import edu.aitu.library.model.Role;
+import edu.aitu.library.service.LibraryService;
+import edu.aitu.library.service.ReservationExpiryService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class CheckoutStress {
+    private static final int BOOKS = 200;
+    private static final int USERS = 50;
+    private static final long RUN_MILLIS = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        int[] threadCounts = {1, 2, 4, 8, 16};
+        int groupCommitBatch = 0;
+        Duration groupCommitLinger = Duration.ZERO;
+        if (args.length >= 3 && args[0].equals("--group-commit")) {
+            groupCommitBatch = Integer.parseInt(args[1]);
+            groupCommitLinger = Duration.ofMillis(Long.parseLong(args[2]));
+        }
+        boolean failed = false;
+
+        for (int threads : threadCounts) {
+            Path file = Files.createTempFile("library-stress-", ".db");
+            try (DB db = new DB("jdbc:sqlite:" + file, threads, threads);
+                 LibraryService service = groupCommitBatch > 0
+                         ? new LibraryService(db, new ReservationExpiryService(db), groupCommitBatch, groupCommitLinger)
+                         : new LibraryService(db)) {
+                try (Connection conn = db.getConnection()) {
+                    SchemaInitializer.init(conn);
+                }
+                int[] bookIds = new int[BOOKS];
+                int[] userIds = new int[USERS];
+                for (int i = 0; i < BOOKS; i++) bookIds[i] = service.addBook("Book " + i, "Author " + (i % 17));
+                for (int i = 0; i < USERS; i++) userIds[i] = service.registerUser("User " + i, Role.LIBRARIAN);
+
+                service.estimateWait(bookIds[0]);
+                long ops = run(service, threads, bookIds, userIds);
+                List<String> violations = verify(db);
+                violations.addAll(verifyDueDates(service, db));
+
+                System.out.printf("threads=%2d  ops=%,8d  throughput=%,10.0f ops/s  violations=%d  batches=%d%n",
+                        threads, ops, ops * 1000.0 / RUN_MILLIS, violations.size(), service.groupCommitBatches());
+                violations.forEach(v -> System.out.println("  VIOLATION: " + v));
+                failed |= !violations.isEmpty();
+            } finally {
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(Path.of(file + "-wal"));
+                Files.deleteIfExists(Path.of(file + "-shm"));
+            }
+        }
+
+        List<String> churnViolations = churn();
+        System.out.printf("due-date churn  violations=%d%n", churnViolations.size());
+        churnViolations.forEach(v -> System.out.println("  VIOLATION: " + v));
+        failed |= !churnViolations.isEmpty();
+
+        System.out.println(failed ? "FAILED" : "OK");
+        if (failed) System.exit(1);
+    }
+
+    private static List<String> churn() throws Exception {
+        Path file = Files.createTempFile("library-churn-", ".db");
+        try (DB db = new DB("jdbc:sqlite:" + file, 1, 1);
+             LibraryService service = new LibraryService(db)) {
+            try (Connection conn = db.getConnection()) {
+                SchemaInitializer.init(conn);
+            }
+            int[] bookIds = new int[BOOKS];
+            for (int i = 0; i < BOOKS; i++) bookIds[i] = service.addBook("Book " + i, "Author " + (i % 17));
+            int holder = service.registerUser("Holder", Role.LIBRARIAN);
+            int cycler = service.registerUser("Cycler", Role.LIBRARIAN);
+            service.estimateWait(bookIds[0]);
+
+            for (int i = 0; i < 5; i++) service.borrowBook(holder, bookIds[i]);
+            for (int round = 0; round < 5; round++) {
+                for (int i = 5; i < BOOKS; i++) {
+                    service.borrowBook(cycler, bookIds[i]);
+                    service.returnBook(bookIds[i]);
+                }
+            }
+            List<String> violations = verify(db);
+            violations.addAll(verifyDueDates(service, db));
+            return violations;
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(Path.of(file + "-wal"));
+            Files.deleteIfExists(Path.of(file + "-shm"));
+        }
+    }
+
+    private static long run(LibraryService service, int threads, int[] bookIds, int[] userIds) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        LongAdder ops = new LongAdder();
+        long deadline = System.currentTimeMillis() + RUN_MILLIS;
+
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(pool.submit(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                while (System.currentTimeMillis() < deadline) {
+                    int bookId = bookIds[rnd.nextInt(bookIds.length)];
+                    try {
+                        if (rnd.nextBoolean()) {
+                            service.borrowBook(userIds[rnd.nextInt(userIds.length)], bookId);
+                        } else {
+                            service.returnBook(bookId);
+                        }
+                    } catch (LibraryException expected) {
+                        // unavailable book, limit reached or nothing to return
+                    }
+                    ops.increment();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> w : workers) w.get();
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        return ops.sum();
+    }
+
+    static List<String> verify(DB db) throws Exception {
+        List<String> violations = new ArrayList<>();
+        try (Connection conn = db.getReadConnection();
+             Statement st = conn.createStatement()) {
+            try (ResultSet rs = st.executeQuery("""
+                    SELECT book_id, COUNT(*) AS n FROM loans
+                    WHERE return_date IS NULL GROUP BY book_id HAVING COUNT(*) > 1
+                    """)) {
+                while (rs.next()) violations.add("book " + rs.getInt("book_id") + " has " + rs.getInt("n") + " open loans");
+            }
+            try (ResultSet rs = st.executeQuery("""
+                    SELECT b.id FROM books b
+                    WHERE b.available = (SELECT COUNT(*) FROM loans l WHERE l.book_id = b.id AND l.return_date IS NULL)
+                    """)) {
+                while (rs.next()) violations.add("book " + rs.getInt("id") + " availability disagrees with its loans");
+            }
+            try (ResultSet rs = st.executeQuery("""
+                    SELECT u.id FROM users u
+                    WHERE u.open_loans <> (SELECT COUNT(*) FROM loans l WHERE l.user_id = u.id AND l.return_date IS NULL)
+                    """)) {
+                while (rs.next()) violations.add("user " + rs.getInt("id") + " open loan counter is wrong");
+            }
+        }
+        return violations;
+    }
+
+    static List<String> verifyDueDates(LibraryService service, DB db) throws Exception {
+        List<String> violations = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        try (Connection conn = db.getReadConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("""
+                     SELECT b.id, (SELECT MAX(l.due_date) FROM loans l
+                                   WHERE l.book_id = b.id AND l.return_date IS NULL) AS due_date
+                     FROM books b
+                     """)) {
+            while (rs.next()) {
+                int bookId = rs.getInt("id");
+                String due = rs.getString("due_date");
+                LocalDate expected = due == null ? today : LocalDate.parse(due);
+                if (expected.isBefore(today)) expected = today;
+                LocalDate actual = service.estimateWait(bookId).getEstimatedAvailableOn();
+                if (!expected.equals(actual)) {
+                    violations.add("book " + bookId + " due-date index says " + actual + ", loans say " + expected);
+                }
+            }
+        }
+        return violations;
+    }
+}
@@ -0,0 +1,112 @@
+package edu.aitu.library.app;
+
+import edu.aitu.library.data.DB;
+import edu.aitu.library.model.Book;
+import edu.aitu.library.model.Loan;
+import edu.aitu.library.model.Reservation;
+import edu.aitu.library.service.LibraryService;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+public class ExportTool {
+    private static final int DEFAULT_FETCH_SIZE = 1_000;
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            usage();
+            return;
+        }
+
+        String kind = args[0];
+        Path file = Path.of(args[1]);
+        String url = "jdbc:sqlite:library.db";
+        int fetchSize = DEFAULT_FETCH_SIZE;
+
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--db" -> url = args[++i];
+                case "--fetch" -> fetchSize = Integer.parseInt(args[++i]);
+                default -> {
+                    System.out.println("Unknown option: " + args[i]);
+                    usage();
+                    return;
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        try (DB db = new DB(url);
+             BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            LibraryService service = new LibraryService(db);
+            long rows = switch (kind) {
+                case "books" -> {
+                    out.write("id,title,author,available\n");
+                    try (Stream<Book> books = service.streamBooks(fetchSize)) {
+                        yield write(out, books, b -> row(b.getId(), b.getTitle(), b.getAuthor(), b.isAvailable()));
+                    }
+                }
+                case "loans" -> {
+                    out.write("id,user_id,book_id,loan_date,due_date,return_date,fine_cents\n");
+                    try (Stream<Loan> loans = service.streamLoans(fetchSize)) {
+                        yield write(out, loans, l -> row(l.getId(), l.getUserId(), l.getBookId(), l.getLoanDate(),
+                                l.getDueDate(), l.getReturnDate(), l.getFineCents()));
+                    }
+                }
+                case "reservations" -> {
+                    out.write("id,user_id,book_id,status,created_at,expires_at,fulfilled_loan_id\n");
+                    try (Stream<Reservation> list = service.streamReservations(fetchSize)) {
+                        yield write(out, list, r -> row(r.getId(), r.getUserId(), r.getBookId(), r.getStatus(),
+                                r.getCreatedAt(), r.getExpiresAt(), r.getFulfilledLoanId()));
+                    }
+                }
+                default -> throw new IllegalArgumentException("Unknown export kind: " + kind);
+            };
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Exported %,d %s rows to %s in %.2fs%n", rows, kind, file, seconds);
+        } catch (Exception e) {
+            System.out.println("Export failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static <T> long write(Writer out, Stream<T> rows, Function<T, String> format) {
+        long[] count = {0};
+        rows.forEach(r -> {
+            try {
+                out.write(format.apply(r));
+                count[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return count[0];
+    }
+
+    private static String row(Object... values) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) sb.append(',');
+            Object v = values[i];
+            if (v == null) continue;
+            String s = v.toString();
+            if (s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0) {
+                sb.append('"').append(s.replace("\"", "\"\"")).append('"');
+            } else {
+                sb.append(s);
+            }
+        }
+        return sb.append('\n').toString();
+    }
+
+    private static void usage() {
+        System.out.println("Usage: ExportTool <books|loans|reservations> <file> [--db <jdbc-url>] [--fetch <rows>]");
+    }
+}
@@ -0,0 +1,145 @@
+package edu.aitu.library.app;
+
+import edu.aitu.library.data.DB;
+import edu.aitu.library.data.SchemaInitializer;
+import edu.aitu.library.http.LibraryHttpServer;
+import edu.aitu.library.metrics.LatencyHistogram;
+import edu.aitu.library.model.Role;
+import edu.aitu.library.service.LibraryService;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+public class HttpLoadCheck {
+    private static final int BOOKS = 500;
+    private static final int USERS = 100;
+
+    public static void main(String[] args) throws Exception {
+        int requests = 20_000;
+        int concurrency = 2_000;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--requests" -> requests = Integer.parseInt(args[++i]);
+                case "--concurrency" -> concurrency = Integer.parseInt(args[++i]);
+                default -> {
+                    System.out.println("Usage: HttpLoadCheck [--requests 20000] [--concurrency 2000]");
+                    return;
+                }
+            }
+        }
+
+        Path file = Files.createTempFile("library-http-", ".db");
+        try (DB db = new DB("jdbc:sqlite:" + file, 8);
+             LibraryService service = new LibraryService(db)) {
+            try (Connection conn = db.getConnection()) {
+                SchemaInitializer.init(conn);
+            }
+            int[] bookIds = new int[BOOKS];
+            int[] userIds = new int[USERS];
+            for (int i = 0; i < BOOKS; i++) bookIds[i] = service.addBook("Book " + i, "Author " + (i % 23));
+            for (int i = 0; i < USERS; i++) userIds[i] = service.registerUser("User " + i, Role.LIBRARIAN);
+
+            try (LibraryHttpServer server = new LibraryHttpServer(service, new InetSocketAddress("127.0.0.1", 0)).start()) {
+                System.out.printf("server on port %d, virtual threads=%s, requests=%,d, in flight=%,d%n",
+                        server.getPort(), server.usesVirtualThreads(), requests, concurrency);
+                boolean ok = fire(server.getPort(), requests, concurrency, bookIds, userIds);
+
+                List<String> violations = CheckoutStress.verify(db);
+                violations.forEach(v -> System.out.println("  VIOLATION: " + v));
+                ok &= violations.isEmpty();
+                System.out.println(ok ? "OK" : "FAILED");
+                if (!ok) System.exit(1);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(Path.of(file + "-wal"));
+            Files.deleteIfExists(Path.of(file + "-shm"));
+        }
+    }
+
+    private static boolean fire(int port, int requests, int concurrency, int[] bookIds, int[] userIds) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        String base = "http://127.0.0.1:" + port;
+        Semaphore inFlight = new Semaphore(concurrency);
+        ConcurrentMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        LongAdder transportErrors = new LongAdder();
+        ConcurrentMap<String, LongAdder> errorKinds = new ConcurrentHashMap<>();
+        LatencyHistogram latency = new LatencyHistogram();
+        CompletableFuture<?>[] all = new CompletableFuture<?>[requests];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            long sent = System.nanoTime();
+            all[i] = client.sendAsync(randomRequest(base, bookIds, userIds), HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, error) -> {
+                        inFlight.release();
+                        latency.record(System.nanoTime() - sent);
+                        if (error == null) {
+                            statuses.computeIfAbsent(response.statusCode(), s -> new LongAdder()).increment();
+                            return;
+                        }
+                        transportErrors.increment();
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        errorKinds.computeIfAbsent(cause.getClass().getSimpleName() + ": " + cause.getMessage(), k -> new LongAdder()).increment();
+                    });
+        }
+        CompletableFuture.allOf(all).handle((v, e) -> null).join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("elapsed=%.1fs  throughput=%,.0f req/s  p50=%.2fms  p99=%.2fms  max=%.2fms%n",
+                seconds, requests / seconds, latency.percentileNanos(50) / 1e6,
+                latency.percentileNanos(99) / 1e6, latency.getMaxNanos() / 1e6);
+        long serverErrors = 0;
+        for (Map.Entry<Integer, LongAdder> e : new TreeMap<>(statuses).entrySet()) {
+            System.out.printf("  status %d: %,d%n", e.getKey(), e.getValue().sum());
+            if (e.getKey() >= 500 || e.getKey() == 400) serverErrors += e.getValue().sum();
+        }
+        if (transportErrors.sum() > 0) System.out.printf("  transport errors: %,d%n", transportErrors.sum());
+        errorKinds.forEach((kind, n) -> System.out.printf("    %s: %,d%n", kind, n.sum()));
+        return serverErrors == 0 && transportErrors.sum() == 0;
+    }
+
+    private static HttpRequest randomRequest(String base, int[] bookIds, int[] userIds) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int bookId = bookIds[rnd.nextInt(bookIds.length)];
+        int userId = userIds[rnd.nextInt(userIds.length)];
+        int pick = rnd.nextInt(100);
+        if (pick < 35) return post(base + "/borrow", "{\"userId\":" + userId + ",\"bookId\":" + bookId + "}");
+        if (pick < 65) return post(base + "/return", "{\"bookId\":" + bookId + "}");
+        if (pick < 75) return post(base + "/reserve", "{\"userId\":" + userId + ",\"bookId\":" + bookId + "}");
+        if (pick < 90) return get(base + "/books?limit=20");
+        return get(base + "/loans?limit=20");
+    }
+
+    private static HttpRequest post(String uri, String json) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private static HttpRequest get(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri)).timeout(Duration.ofSeconds(60)).GET().build();
+    }
+}
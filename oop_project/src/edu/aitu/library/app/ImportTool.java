@@ -0,0 +1,71 @@
+package edu.aitu.library.app;
+
+import edu.aitu.library.data.DB;
+import edu.aitu.library.data.SchemaInitializer;
+import edu.aitu.library.importer.BulkImporter;
+import edu.aitu.library.importer.ImportProgressListener;
+import edu.aitu.library.importer.ImportResult;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+
+public class ImportTool {
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            usage();
+            return;
+        }
+
+        String kind = args[0];
+        Path file = Path.of(args[1]);
+        String url = "jdbc:sqlite:library.db";
+        int chunkSize = BulkImporter.DEFAULT_CHUNK_SIZE;
+        char delimiter = file.toString().toLowerCase().endsWith(".tsv") ? '\t' : ',';
+        boolean hasHeader = true;
+
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--db" -> url = args[++i];
+                case "--chunk" -> chunkSize = Integer.parseInt(args[++i]);
+                case "--tsv" -> delimiter = '\t';
+                case "--csv" -> delimiter = ',';
+                case "--no-header" -> hasHeader = false;
+                default -> {
+                    System.out.println("Unknown option: " + args[i]);
+                    usage();
+                    return;
+                }
+            }
+        }
+
+        ImportProgressListener progress = (rows, rejected, rate) ->
+                System.out.printf("  %,d rows imported, %,d rejected (%,.0f rows/sec)%n", rows, rejected, rate);
+
+        try (DB db = new DB(url);
+             Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            try (Connection conn = db.getConnection()) {
+                SchemaInitializer.init(conn);
+            }
+
+            BulkImporter importer = new BulkImporter(db, chunkSize);
+            ImportResult result = switch (kind) {
+                case "books" -> importer.importBooks(in, delimiter, hasHeader, progress);
+                case "users" -> importer.importUsers(in, delimiter, hasHeader, progress);
+                default -> throw new IllegalArgumentException("Unknown import kind: " + kind);
+            };
+            System.out.println("Done: " + result);
+        } catch (Exception e) {
+            System.out.println("Import failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Usage: ImportTool <books|users> <file> [--db <jdbc-url>] [--chunk <rows>] [--csv|--tsv] [--no-header]");
+        System.out.println("  books: title,author    users: name,role");
+    }
+}
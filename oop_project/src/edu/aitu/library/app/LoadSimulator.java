@@ -0,0 +1,106 @@
+package edu.aitu.library.app;
+
+import edu.aitu.library.data.DB;
+import edu.aitu.library.data.QueryTracer;
+import edu.aitu.library.data.SchemaInitializer;
+import edu.aitu.library.service.LibraryService;
+import edu.aitu.library.sim.OperationMix;
+import edu.aitu.library.sim.SyntheticLibrary;
+import edu.aitu.library.sim.SyntheticLibraryGenerator;
+import edu.aitu.library.sim.WorkloadReport;
+import edu.aitu.library.sim.WorkloadSimulator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LoadSimulator {
+
+    public static void main(String[] args) throws Exception {
+        Path file = Path.of("simulation.db");
+        boolean overwrite = false;
+        int books = 10_000;
+        int users = 2_000;
+        double librarianShare = 0.05;
+        int history = 50_000;
+        double zipf = 1.0;
+        long seed = 42;
+        List<Integer> threadCounts = new ArrayList<>(List.of(8));
+        Duration duration = Duration.ofSeconds(30);
+        OperationMix mix = new OperationMix(40, 35, 10, 15);
+        long traceSlowMillis = -1;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--db" -> file = Path.of(args[++i]);
+                case "--overwrite" -> overwrite = true;
+                case "--books" -> books = Integer.parseInt(args[++i]);
+                case "--users" -> users = Integer.parseInt(args[++i]);
+                case "--librarians" -> librarianShare = Double.parseDouble(args[++i]);
+                case "--history" -> history = Integer.parseInt(args[++i]);
+                case "--zipf" -> zipf = Double.parseDouble(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--threads" -> {
+                    threadCounts.clear();
+                    for (String s : args[++i].split(",")) threadCounts.add(Integer.parseInt(s.trim()));
+                }
+                case "--seconds" -> duration = Duration.ofSeconds(Long.parseLong(args[++i]));
+                case "--mix" -> mix = OperationMix.parse(args[++i]);
+                case "--trace-slow-ms" -> traceSlowMillis = Long.parseLong(args[++i]);
+                default -> {
+                    System.out.println("Unknown option: " + args[i]);
+                    usage();
+                    return;
+                }
+            }
+        }
+
+        if (Files.exists(file)) {
+            if (!overwrite) {
+                System.out.println("Database already exists: " + file + " (use --overwrite to replace it)");
+                return;
+            }
+            Files.delete(file);
+            Files.deleteIfExists(Path.of(file + "-wal"));
+            Files.deleteIfExists(Path.of(file + "-shm"));
+        }
+
+        int maxThreads = threadCounts.stream().mapToInt(Integer::intValue).max().orElse(1);
+        try (DB db = new DB("jdbc:sqlite:" + file.toAbsolutePath(), maxThreads)) {
+            QueryTracer tracer = traceSlowMillis >= 0 ? new QueryTracer(Duration.ofMillis(traceSlowMillis)) : null;
+            if (tracer != null) db.enableTracing(tracer);
+            try (Connection conn = db.getConnection()) {
+                SchemaInitializer.init(conn);
+            }
+
+            long start = System.nanoTime();
+            SyntheticLibrary library = new SyntheticLibraryGenerator(db, seed, zipf)
+                    .generate(books, users, librarianShare, history);
+            System.out.printf("Generated %s in %.1fs%n", library, (System.nanoTime() - start) / 1e9);
+            System.out.println(mix + ", zipf=" + zipf + ", duration=" + duration.toSeconds() + "s");
+            if (tracer != null) tracer.reset();
+
+            LibraryService service = new LibraryService(db);
+            WorkloadSimulator simulator = new WorkloadSimulator(db, service, library, mix, zipf);
+            for (int threads : threadCounts) {
+                System.out.println();
+                WorkloadReport report = simulator.run(threads, duration);
+                System.out.print(report);
+            }
+            if (tracer != null) {
+                System.out.println();
+                System.out.print(tracer.report(15));
+            }
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Usage: LoadSimulator [--db simulation.db] [--overwrite] [--books 10000] [--users 2000]");
+        System.out.println("                     [--librarians 0.05] [--history 50000] [--zipf 1.0] [--seed 42]");
+        System.out.println("                     [--threads 1,4,16] [--seconds 30] [--mix borrow,return,reserve,list]");
+        System.out.println("                     [--trace-slow-ms 50]");
+    }
+}
@@ -1,30 +1,104 @@
 package edu.aitu.library.app;
 
 import edu.aitu.library.data.DB;
+import edu.aitu.library.data.QueryTracer;
 import edu.aitu.library.data.SchemaInitializer;
 import edu.aitu.library.exception.LibraryException;
+import edu.aitu.library.http.LibraryHttpServer;
+import edu.aitu.library.metrics.MetricsReporter;
+import edu.aitu.library.metrics.ServiceMetrics;
+import edu.aitu.library.model.Book;
+import edu.aitu.library.model.Page;
+import edu.aitu.library.model.ReservationPosition;
+import edu.aitu.library.repository.QueryPlanVerifier;
 import edu.aitu.library.model.Role;
 import edu.aitu.library.service.LibraryService;
+import edu.aitu.library.service.ReservationExpiryService;
 
+import java.net.InetSocketAddress;
 import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
 
 public class Main {
+    private static final int PAGE_SIZE = 20;
+
+    private interface PageFetcher<T> {
+        Page<T> fetch(String cursor) throws LibraryException;
+    }
 
     public static void main(String[] args) {
         String url = "jdbc:sqlite:library.db";
-
-        try (Connection conn = new DB(url).getConnection()) {
-            SchemaInitializer.init(conn);
-            LibraryService service = new LibraryService(conn);
-            runMenu(service);
+        int httpPort = args.length >= 2 && args[0].equals("--http") ? Integer.parseInt(args[1]) : -1;
+
+        try (DB db = new DB(url)) {
+            long slowMillis = Long.getLong("library.traceSlowMillis", -1L);
+            if (slowMillis >= 0) db.enableTracing(new QueryTracer(Duration.ofMillis(slowMillis)));
+            try (Connection conn = db.getConnection()) {
+                SchemaInitializer.init(conn);
+                QueryPlanVerifier.check(conn, QueryPlanVerifier.Mode.fromString(System.getProperty("library.planCheck")));
+            }
+            try (ReservationExpiryService expiry = new ReservationExpiryService(db);
+                 LibraryService service = new LibraryService(db, expiry)) {
+                expiry.start();
+                service.metrics().registerMBeans(ServiceMetrics.DEFAULT_DOMAIN);
+                MetricsReporter reporter = startReporter(service);
+                try {
+                    if (httpPort >= 0) {
+                        serveHttp(service, httpPort);
+                    } else {
+                        runMenu(service, db);
+                    }
+                } finally {
+                    if (reporter != null) reporter.close();
+                }
+            }
         } catch (Exception e) {
             System.out.println("Fatal error: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
-    private static void runMenu(LibraryService service) {
+    private static void serveHttp(LibraryService service, int port) throws Exception {
+        // Kiosk calls are small request/response pairs, so Nagle's algorithm only adds latency. The JDK server reads
+        // this property once, when the first HttpServer is created; -Dsun.net.httpserver.nodelay=false overrides it.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        CountDownLatch stopped = new CountDownLatch(1);
+        Thread main = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stopped.countDown();
+            try {
+                main.join(10_000);
+            } catch (InterruptedException ignored) {
+            }
+        }));
+        try (LibraryHttpServer server = new LibraryHttpServer(service, new InetSocketAddress(port)).start()) {
+            System.out.println("Serving the library API on port " + server.getPort() + ". Press Ctrl+C to stop.");
+            stopped.await();
+        }
+    }
+
+    private static void showSqlStatistics(DB db) {
+        QueryTracer tracer = db.getQueryTracer();
+        if (tracer == null) {
+            System.out.println("SQL tracing is off. Start with -Dlibrary.traceSlowMillis=<ms> to enable it.");
+            return;
+        }
+        System.out.print(tracer.report(20));
+        System.out.println("slow queries: " + tracer.getSlowQueries());
+    }
+
+    private static MetricsReporter startReporter(LibraryService service) {
+        long seconds = Long.getLong("library.metricsDumpSeconds", 0L);
+        if (seconds <= 0) return null;
+        return new MetricsReporter(service.metrics(), Duration.ofSeconds(seconds)).start();
+    }
+
+    private static void runMenu(LibraryService service, DB db) {
         Scanner sc = new Scanner(System.in);
 
         while (true) {
@@ -38,6 +112,10 @@ public class Main {
             System.out.println("7) List loans");
             System.out.println("8) Reserve book");
             System.out.println("9) List reservations");
+            System.out.println("10) Search books");
+            System.out.println("11) Show metrics");
+            System.out.println("12) Show SQL statistics");
+            System.out.println("13) Reservation queue position");
             System.out.println("0) Exit");
             System.out.print("Choose: ");
 
@@ -47,13 +125,17 @@ public class Main {
                 switch (choice) {
                     case "1" -> registerUser(sc, service);
                     case "2" -> addBook(sc, service);
-                    case "3" -> service.listUsers().forEach(System.out::println);
-                    case "4" -> service.listBooks().forEach(System.out::println);
+                    case "3" -> printPages(sc, cursor -> service.listUsersPage(cursor, PAGE_SIZE));
+                    case "4" -> printPages(sc, cursor -> service.listBooksPage(cursor, PAGE_SIZE));
                     case "5" -> borrowBook(sc, service);
                     case "6" -> returnBook(sc, service);
-                    case "7" -> service.listLoans().forEach(System.out::println);
+                    case "7" -> printPages(sc, cursor -> service.listLoansPage(cursor, PAGE_SIZE));
                     case "8" -> reserveBook(sc, service);
-                    case "9" -> service.listReservations().forEach(System.out::println);
+                    case "9" -> printPages(sc, cursor -> service.listReservationsPage(cursor, PAGE_SIZE));
+                    case "10" -> searchBooks(sc, service);
+                    case "11" -> System.out.print(service.metrics().dump());
+                    case "12" -> showSqlStatistics(db);
+                    case "13" -> showReservationPosition(sc, service);
                     case "0" -> {
                         System.out.println("Bye.");
                         return;
@@ -68,6 +150,23 @@ public class Main {
         }
     }
 
+    private static <T> void printPages(Scanner sc, PageFetcher<T> fetcher) throws LibraryException {
+        String cursor = null;
+        while (true) {
+            Page<T> page = fetcher.fetch(cursor);
+            if (page.getItems().isEmpty() && cursor == null) {
+                System.out.println("Nothing to show.");
+                return;
+            }
+            page.getItems().forEach(System.out::println);
+            if (!page.hasNext()) return;
+
+            System.out.print("-- Enter for next page, q to stop: ");
+            if (sc.nextLine().trim().equalsIgnoreCase("q")) return;
+            cursor = page.getNextCursor();
+        }
+    }
+
     private static void registerUser(Scanner sc, LibraryService service) throws LibraryException {
         System.out.print("Name: ");
         String name = sc.nextLine().trim();
@@ -90,6 +189,18 @@ public class Main {
         System.out.println("Added book with id=" + id);
     }
 
+    private static void searchBooks(Scanner sc, LibraryService service) throws LibraryException {
+        System.out.print("Search (title / author): ");
+        String query = sc.nextLine().trim();
+
+        List<Book> found = service.searchBooks(query, 20);
+        if (found.isEmpty()) {
+            System.out.println("No books found.");
+        } else {
+            found.forEach(System.out::println);
+        }
+    }
+
     private static void borrowBook(Scanner sc, LibraryService service) throws LibraryException {
         System.out.print("User id: ");
         int userId = Integer.parseInt(sc.nextLine().trim());
@@ -124,4 +235,19 @@ public class Main {
             System.out.println("Reservation created with id=" + result);
         }
     }
+
+    private static void showReservationPosition(Scanner sc, LibraryService service) throws LibraryException {
+        System.out.print("Book id: ");
+        int bookId = Integer.parseInt(sc.nextLine().trim());
+
+        System.out.print("User id (blank for a new reservation): ");
+        String user = sc.nextLine().trim();
+
+        ReservationPosition p = user.isEmpty()
+                ? service.estimateWait(bookId)
+                : service.getReservationPosition(Integer.parseInt(user), bookId);
+        System.out.println("Position " + p.getPosition() + " of " + Math.max(p.getQueueLength(), p.getPosition()) +
+                ", estimated available on " + p.getEstimatedAvailableOn() +
+                " (" + p.getEstimatedWaitDays() + " days)");
+    }
 }
@@ -0,0 +1,71 @@
+package edu.aitu.library.app;
+
+import edu.aitu.library.data.DB;
+import edu.aitu.library.data.SchemaInitializer;
+import edu.aitu.library.model.OverdueReport;
+import edu.aitu.library.model.OverdueSummary;
+import edu.aitu.library.service.OverdueFineService;
+
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.util.List;
+
+public class OverdueReportTool {
+    private static final int DEFAULT_TOP = 10;
+
+    public static void main(String[] args) {
+        String url = "jdbc:sqlite:library.db";
+        LocalDate asOf = LocalDate.now();
+        boolean full = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int top = DEFAULT_TOP;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--db" -> url = args[++i];
+                case "--as-of" -> asOf = LocalDate.parse(args[++i]);
+                case "--full" -> full = true;
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--top" -> top = Integer.parseInt(args[++i]);
+                default -> {
+                    System.out.println("Unknown option: " + args[i]);
+                    usage();
+                    return;
+                }
+            }
+        }
+
+        try (DB db = new DB(url, Math.max(1, threads));
+             OverdueFineService overdue = new OverdueFineService(db, threads)) {
+            try (Connection conn = db.getConnection()) {
+                SchemaInitializer.init(conn);
+            }
+            OverdueReport report = full ? overdue.runFull(asOf) : overdue.run(asOf);
+            System.out.printf("%s run as of %s: %,d overdue loans, %,d users, %,d books, accrued %s in %,d ms (%d chunks)%n",
+                    report.isIncremental() ? "Incremental" : "Full", report.getAsOf(), report.getOverdueLoans(),
+                    report.getUsers(), report.getBooks(), money(report.getAccruedCents()), report.getMillis(),
+                    report.getChunks());
+            print("Top users", "user", overdue.topUsers(top));
+            print("Top books", "book", overdue.topBooks(top));
+        } catch (Exception e) {
+            System.out.println("Overdue report failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static void print(String title, String kind, List<OverdueSummary> rows) {
+        System.out.println(title + ":");
+        for (OverdueSummary s : rows) {
+            System.out.printf("  %s %-8d %5d loans  %12s%n", kind, s.getId(), s.getOverdueLoans(), money(s.getAccruedCents()));
+        }
+    }
+
+    private static String money(long cents) {
+        return String.format("%,d.%02d", cents / 100, cents % 100);
+    }
+
+    private static void usage() {
+        System.out.println("Usage: OverdueReportTool [--db <jdbc-url>] [--as-of <yyyy-mm-dd>] [--full] [--threads <n>] [--top <n>]");
+        System.out.println("  Runs incrementally from the previous run unless --full is given or there is no previous run.");
+    }
+}
@@ -0,0 +1,174 @@
+package edu.aitu.library.bench;
+
+import edu.aitu.library.data.DB;
+import edu.aitu.library.data.SchemaInitializer;
+import edu.aitu.library.repository.UserRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.Random;
+
+public class BenchmarkDataset {
+    public static final long SEED = 42L;
+
+    static final int LENT_EVERY = 10;
+    static final int RESERVED_EVERY = 100;
+    private static final int CHUNK = 50_000;
+    private static final int FINE_CENTS_PER_DAY = 200;
+
+    private static final String[] WORDS = {
+            "river", "shadow", "garden", "empire", "silent", "winter", "code", "history", "ocean", "night",
+            "machine", "letters", "city", "journey", "science", "theory", "forest", "light", "stone", "music"
+    };
+    private static final String[] SURNAMES = {
+            "Abenov", "Smith", "Nurlanova", "Garcia", "Tanaka", "Kim", "Muller", "Rossi", "Ivanova", "Brown"
+    };
+
+    private BenchmarkDataset() {
+    }
+
+    public static Path prepare(Path dir, int rows) throws Exception {
+        Files.createDirectories(dir);
+        Path file = dir.resolve("library-" + rows + ".db");
+        try (DB db = new DB(url(file), 1)) {
+            try (Connection conn = db.getConnection()) {
+                SchemaInitializer.init(conn);
+                if (count(conn, "books") == rows) return file;
+                if (count(conn, "books") != 0) {
+                    throw new SQLException("Benchmark database has unexpected contents, delete it first: " + file);
+                }
+                seed(conn, rows);
+            }
+        }
+        return file;
+    }
+
+    public static String url(Path file) {
+        return "jdbc:sqlite:" + file.toAbsolutePath();
+    }
+
+    public static int userCount(int rows) {
+        return Math.max(100, rows / LENT_EVERY);
+    }
+
+    private static void seed(Connection conn, int rows) throws SQLException {
+        Random rnd = new Random(SEED);
+        int users = userCount(rows);
+        LocalDate today = LocalDate.now();
+        long start = System.nanoTime();
+
+        conn.setAutoCommit(false);
+        try {
+            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO users(name, role) VALUES(?, ?)")) {
+                for (int i = 1; i <= users; i++) {
+                    ps.setString(1, SURNAMES[rnd.nextInt(SURNAMES.length)] + " " + i);
+                    ps.setString(2, i % 10 == 0 ? "LIBRARIAN" : "MEMBER");
+                    ps.addBatch();
+                    if (i % CHUNK == 0) flush(conn, ps);
+                }
+                flush(conn, ps);
+            }
+
+            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO books(title, author, available) VALUES(?, ?, ?)")) {
+                for (int i = 1; i <= rows; i++) {
+                    ps.setString(1, WORDS[rnd.nextInt(WORDS.length)] + " " + WORDS[rnd.nextInt(WORDS.length)] + " " + i);
+                    ps.setString(2, SURNAMES[rnd.nextInt(SURNAMES.length)]);
+                    ps.setInt(3, i % LENT_EVERY == 0 ? 0 : 1);
+                    ps.addBatch();
+                    if (i % CHUNK == 0) flush(conn, ps);
+                }
+                flush(conn, ps);
+            }
+
+            try (PreparedStatement ps = conn.prepareStatement("""
+                    INSERT INTO loans(user_id, book_id, loan_date, due_date, return_date, fine_cents)
+                    VALUES(?, ?, ?, ?, ?, ?)
+                    """)) {
+                for (int i = 1; i <= rows; i++) {
+                    LocalDate loanDate = today.minusDays(30 + rnd.nextInt(720));
+                    LocalDate dueDate = loanDate.plusDays(14);
+                    LocalDate returnDate = loanDate.plusDays(1 + rnd.nextInt(21));
+                    long late = Math.max(0, returnDate.toEpochDay() - dueDate.toEpochDay());
+                    ps.setInt(1, 1 + rnd.nextInt(users));
+                    ps.setInt(2, 1 + rnd.nextInt(rows));
+                    ps.setString(3, loanDate.toString());
+                    ps.setString(4, dueDate.toString());
+                    ps.setString(5, returnDate.toString());
+                    ps.setInt(6, (int) late * FINE_CENTS_PER_DAY);
+                    ps.addBatch();
+                    if (i % CHUNK == 0) flush(conn, ps);
+                }
+                for (int bookId = LENT_EVERY, n = 0; bookId <= rows; bookId += LENT_EVERY, n++) {
+                    LocalDate loanDate = today.minusDays(rnd.nextInt(20));
+                    ps.setInt(1, 1 + n % users);
+                    ps.setInt(2, bookId);
+                    ps.setString(3, loanDate.toString());
+                    ps.setString(4, loanDate.plusDays(14).toString());
+                    ps.setNull(5, Types.VARCHAR);
+                    ps.setInt(6, 0);
+                    ps.addBatch();
+                    if (n % CHUNK == 0) flush(conn, ps);
+                }
+                flush(conn, ps);
+            }
+
+            try (PreparedStatement ps = conn.prepareStatement("""
+                    INSERT INTO reservations(user_id, book_id, status, created_at, expires_at)
+                    VALUES(?, ?, ?, ?, ?)
+                    """)) {
+                for (int bookId = RESERVED_EVERY, n = 0; bookId <= rows; bookId += RESERVED_EVERY, n++) {
+                    LocalDate created = today.minusDays(rnd.nextInt(3));
+                    ps.setInt(1, 1 + (n + users / 2) % users);
+                    ps.setInt(2, bookId);
+                    ps.setString(3, "ACTIVE");
+                    ps.setString(4, created.toString());
+                    ps.setString(5, created.plusDays(7).toString());
+                    ps.addBatch();
+                }
+                for (int i = 1; i <= rows / LENT_EVERY; i++) {
+                    LocalDate created = today.minusDays(30 + rnd.nextInt(720));
+                    ps.setInt(1, 1 + rnd.nextInt(users));
+                    ps.setInt(2, 1 + rnd.nextInt(rows));
+                    ps.setString(3, "EXPIRED");
+                    ps.setString(4, created.toString());
+                    ps.setString(5, created.plusDays(7).toString());
+                    ps.addBatch();
+                    if (i % CHUNK == 0) flush(conn, ps);
+                }
+                flush(conn, ps);
+            }
+
+            new UserRepository(conn).recomputeOpenLoanCounts();
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+
+        try (Statement st = conn.createStatement()) {
+            st.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+        }
+        System.out.printf("Seeded %,d books, %,d users in %.1fs%n", rows, users, (System.nanoTime() - start) / 1e9);
+    }
+
+    private static void flush(Connection conn, PreparedStatement ps) throws SQLException {
+        ps.executeBatch();
+        conn.commit();
+    }
+
+    private static int count(Connection conn, String table) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package edu.aitu.library.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BenchmarkRunner {
+
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    public static final Operation NO_RESET = () -> { };
+
+    private static final Method THREAD_ID = lookupThreadId();
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private final com.sun.management.ThreadMXBean threads;
+    private final List<Result> results = new ArrayList<>();
+
+    public BenchmarkRunner(int warmupIterations, int measurementIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+        this.threads = allocationBean();
+    }
+
+    public Result run(String name, Operation operation) throws Exception {
+        return run(name, operation, NO_RESET);
+    }
+
+    public Result run(String name, Operation operation, Operation reset) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) iteration(operation, reset);
+
+        double[] throughput = new double[measurementIterations];
+        long ops = 0, nanos = 0, bytes = 0;
+        for (int i = 0; i < measurementIterations; i++) {
+            long[] m = iteration(operation, reset);
+            ops += m[0];
+            nanos += m[1];
+            bytes += m[2];
+            throughput[i] = m[0] * 1e9 / m[1];
+        }
+
+        Result result = new Result(name, ops, nanos, bytes, throughput, threads != null);
+        results.add(result);
+        System.out.println(result);
+        return result;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    private long[] iteration(Operation operation, Operation reset) throws Exception {
+        long tid = currentThreadId();
+        long ops = 0, nanos = 0, bytes = 0;
+        long end = System.nanoTime() + iterationNanos;
+        while (System.nanoTime() < end) {
+            long a0 = threads == null ? 0 : threads.getThreadAllocatedBytes(tid);
+            long t0 = System.nanoTime();
+            operation.run();
+            long t1 = System.nanoTime();
+            long a1 = threads == null ? 0 : threads.getThreadAllocatedBytes(tid);
+            reset.run();
+            ops++;
+            nanos += t1 - t0;
+            bytes += a1 - a0;
+        }
+        return new long[]{ops, nanos, bytes};
+    }
+
+    @SuppressWarnings("deprecation")
+    private static long currentThreadId() {
+        if (THREAD_ID != null) {
+            try {
+                return (long) THREAD_ID.invoke(Thread.currentThread());
+            } catch (ReflectiveOperationException ignored) {
+            }
+        }
+        return Thread.currentThread().getId();
+    }
+
+    private static Method lookupThreadId() {
+        try {
+            return Thread.class.getMethod("threadId");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean)) return null;
+        if (!bean.isThreadAllocatedMemorySupported()) return null;
+        bean.setThreadAllocatedMemoryEnabled(true);
+        return bean;
+    }
+
+    public static class Result {
+        private final String name;
+        private final long operations;
+        private final double opsPerSecond;
+        private final double opsPerSecondError;
+        private final double averageMicros;
+        private final double bytesPerOp;
+        private final boolean allocationMeasured;
+
+        Result(String name, long operations, long nanos, long bytes, double[] throughput, boolean allocationMeasured) {
+            this.name = name;
+            this.operations = operations;
+            this.opsPerSecond = mean(throughput);
+            this.opsPerSecondError = stdev(throughput, opsPerSecond);
+            this.averageMicros = operations == 0 ? 0 : nanos / 1e3 / operations;
+            this.bytesPerOp = operations == 0 ? 0 : (double) bytes / operations;
+            this.allocationMeasured = allocationMeasured;
+        }
+
+        public String getName() { return name; }
+        public long getOperations() { return operations; }
+        public double getOpsPerSecond() { return opsPerSecond; }
+        public double getOpsPerSecondError() { return opsPerSecondError; }
+        public double getAverageMicros() { return averageMicros; }
+        public double getBytesPerOp() { return bytesPerOp; }
+
+        public double getAllocationMbPerSecond() {
+            return averageMicros == 0 ? 0 : bytesPerOp / averageMicros * 1e6 / (1024 * 1024);
+        }
+
+        @Override
+        public String toString() {
+            String alloc = allocationMeasured
+                    ? String.format("%,14.0f B/op %10.1f MB/s", bytesPerOp, getAllocationMbPerSecond())
+                    : "   allocation n/a";
+            return String.format("%-44s %,12.1f +- %,9.1f ops/s %,12.2f us/op %s",
+                    name, opsPerSecond, opsPerSecondError, averageMicros, alloc);
+        }
+
+        private static double mean(double[] values) {
+            double sum = 0;
+            for (double v : values) sum += v;
+            return values.length == 0 ? 0 : sum / values.length;
+        }
+
+        private static double stdev(double[] values, double mean) {
+            if (values.length < 2) return 0;
+            double sq = 0;
+            for (double v : values) sq += (v - mean) * (v - mean);
+            return Math.sqrt(sq / (values.length - 1));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package edu.aitu.library.bench;
+
+import edu.aitu.library.data.DB;
+import edu.aitu.library.data.SchemaInitializer;
+import edu.aitu.library.model.Role;
+import edu.aitu.library.repository.LoanRepository;
+import edu.aitu.library.repository.ReservationRepository;
+import edu.aitu.library.service.LibraryService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LibraryBenchmarks {
+    private static final int FULL_LIST_LIMIT = 1_000_000;
+    private static final int MAPPER_PAGE = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> sizes = new ArrayList<>(List.of(10_000));
+        Path dir = Path.of("bench-data");
+        int warmup = 2;
+        int iterations = 5;
+        long iterationMillis = 1_000;
+        String only = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--rows" -> {
+                    sizes.clear();
+                    for (String s : args[++i].split(",")) sizes.add(Integer.parseInt(s.trim().replace("_", "")));
+                }
+                case "--dir" -> dir = Path.of(args[++i]);
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--iterations" -> iterations = Integer.parseInt(args[++i]);
+                case "--millis" -> iterationMillis = Long.parseLong(args[++i]);
+                case "--only" -> only = args[++i];
+                default -> {
+                    System.out.println("Unknown option: " + args[i]);
+                    usage();
+                    return;
+                }
+            }
+        }
+
+        BenchmarkRunner runner = new BenchmarkRunner(warmup, iterations, iterationMillis);
+        for (int rows : sizes) {
+            System.out.printf("%n== rows=%,d ==%n", rows);
+            Path seeded = BenchmarkDataset.prepare(dir, rows);
+            Path work = dir.resolve("work-" + rows + ".db");
+            Files.copy(seeded, work, StandardCopyOption.REPLACE_EXISTING);
+            try {
+                runAll(runner, work, rows, only);
+            } finally {
+                deleteDatabase(work);
+            }
+        }
+
+        if (selected("SchemaInitializer.init (empty database)", only)) runFreshInit(runner, dir);
+    }
+
+    private static void runAll(BenchmarkRunner runner, Path work, int rows, String only) throws Exception {
+        try (DB db = new DB(BenchmarkDataset.url(work));
+             LibraryService service = new LibraryService(db)) {
+            int benchUser = service.registerUser("Benchmark Librarian", Role.LIBRARIAN);
+            BookCursor free = new BookCursor(rows, false);
+            BookCursor lent = new BookCursor(rows, true);
+
+            if (selected("LibraryService.borrowBook", only)) {
+                int[] book = new int[1];
+                runner.run("LibraryService.borrowBook",
+                        () -> service.borrowBook(benchUser, book[0] = free.next()),
+                        () -> service.returnBook(book[0]));
+            }
+
+            if (selected("LibraryService.returnBook", only)) {
+                int[] book = {free.next()};
+                service.borrowBook(benchUser, book[0]);
+                runner.run("LibraryService.returnBook",
+                        () -> service.returnBook(book[0]),
+                        () -> service.borrowBook(benchUser, book[0] = free.next()));
+                service.returnBook(book[0]);
+            }
+
+            if (selected("LibraryService.reserveBook", only)) {
+                int[] reservation = new int[1];
+                runner.run("LibraryService.reserveBook",
+                        () -> reservation[0] = service.reserveBook(benchUser, lent.next()),
+                        () -> service.cancelReservation(reservation[0]));
+            }
+
+            if (rows <= FULL_LIST_LIMIT) {
+                if (selected("LibraryService.listBooks", only)) runner.run("LibraryService.listBooks", service::listBooks);
+                if (selected("LibraryService.listLoans", only)) runner.run("LibraryService.listLoans", service::listLoans);
+            } else {
+                System.out.printf("LibraryService.listBooks/listLoans skipped above %,d rows%n", FULL_LIST_LIMIT);
+            }
+
+            try (Connection conn = db.getReadConnection()) {
+                LoanRepository loans = new LoanRepository(conn);
+                ReservationRepository reservations = new ReservationRepository(conn);
+                String loanName = "LoanRepository.map (x" + MAPPER_PAGE + ")";
+                String reservationName = "ReservationRepository.map (x" + MAPPER_PAGE + ")";
+                if (selected(loanName, only)) {
+                    runner.run(loanName, () -> loans.findPage(Integer.MAX_VALUE, MAPPER_PAGE));
+                }
+                if (selected(reservationName, only)) {
+                    runner.run(reservationName, () -> reservations.findPage(Integer.MAX_VALUE, MAPPER_PAGE));
+                }
+            }
+
+            if (selected("SchemaInitializer.init (current schema)", only)) {
+                try (Connection conn = db.getConnection()) {
+                    runner.run("SchemaInitializer.init (current schema)", () -> SchemaInitializer.init(conn));
+                }
+            }
+        }
+    }
+
+    private static void runFreshInit(BenchmarkRunner runner, Path dir) throws Exception {
+        Path[] fresh = new Path[1];
+        runner.run("SchemaInitializer.init (empty database)",
+                () -> {
+                    fresh[0] = Files.createTempFile(dir, "init-", ".db");
+                    try (DB db = new DB(BenchmarkDataset.url(fresh[0]), 1);
+                         Connection conn = db.getConnection()) {
+                        SchemaInitializer.init(conn);
+                    }
+                },
+                () -> deleteDatabase(fresh[0]));
+    }
+
+    private static boolean selected(String name, String only) {
+        return only == null || name.contains(only);
+    }
+
+    private static void deleteDatabase(Path file) throws Exception {
+        if (file == null) return;
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(Path.of(file + "-wal"));
+        Files.deleteIfExists(Path.of(file + "-shm"));
+    }
+
+    private static void usage() {
+        System.out.println("Usage: LibraryBenchmarks [--rows 10000,1000000,10000000] [--dir bench-data]");
+        System.out.println("                         [--warmup 2] [--iterations 5] [--millis 1000] [--only <name>]");
+    }
+
+    private static final class BookCursor {
+        private final int rows;
+        private final boolean lent;
+        private int current;
+
+        BookCursor(int rows, boolean lent) {
+            this.rows = rows;
+            this.lent = lent;
+        }
+
+        int next() {
+            do {
+                current = current % rows + 1;
+            } while ((current % BenchmarkDataset.LENT_EVERY == 0) != lent);
+            return current;
+        }
+    }
+}
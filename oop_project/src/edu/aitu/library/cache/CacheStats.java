@@ -0,0 +1,38 @@
+package edu.aitu.library.cache;
+
+public class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long expirations;
+    private final long staleLoadsDropped;
+    private final int size;
+
+    public CacheStats(long hits, long misses, long evictions, long expirations, long staleLoadsDropped, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.staleLoadsDropped = staleLoadsDropped;
+        this.size = size;
+    }
+
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public long getEvictions() { return evictions; }
+    public long getExpirations() { return expirations; }
+    public long getStaleLoadsDropped() { return staleLoadsDropped; }
+    public int getSize() { return size; }
+
+    public double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{size=" + size + ", hits=" + hits + ", misses=" + misses +
+                ", hitRatio=" + String.format("%.3f", getHitRatio()) + ", evictions=" + evictions +
+                ", expirations=" + expirations + ", staleLoadsDropped=" + staleLoadsDropped + "}";
+    }
+}
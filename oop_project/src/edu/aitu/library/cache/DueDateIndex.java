@@ -0,0 +1,105 @@
+package edu.aitu.library.cache;
+
+import edu.aitu.library.model.Loan;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public class DueDateIndex {
+    private static final int EMPTY = 0;
+    private static final int REMOVED = -1;
+
+    private int[] keys = new int[64];
+    private int[] values = new int[64];
+    private int size;
+    private int used;
+    private boolean loaded;
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    public synchronized void load(List<Loan> openLoans) {
+        clearSlots(Math.max(64, Integer.highestOneBit(Math.max(1, openLoans.size()) * 3) << 1));
+        for (Loan loan : openLoans) {
+            if (loan.getReturnDate() == null) insert(loan.getBookId(), (int) loan.getDueDate().toEpochDay());
+        }
+        loaded = true;
+    }
+
+    public synchronized void clear() {
+        clearSlots(64);
+        loaded = false;
+    }
+
+    public synchronized LocalDate dueDate(int bookId) {
+        int slot = find(bookId);
+        return slot < 0 ? null : LocalDate.ofEpochDay(values[slot]);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void put(int bookId, LocalDate dueDate) {
+        if (!loaded) return;
+        insert(bookId, (int) dueDate.toEpochDay());
+    }
+
+    public synchronized LocalDate remove(int bookId) {
+        if (!loaded) return null;
+        int slot = find(bookId);
+        if (slot < 0) return null;
+        keys[slot] = REMOVED;
+        size--;
+        return LocalDate.ofEpochDay(values[slot]);
+    }
+
+    private void insert(int bookId, int epochDay) {
+        if (bookId <= 0) throw new IllegalArgumentException("Book id must be positive: " + bookId);
+        int slot = find(bookId);
+        if (slot >= 0) {
+            values[slot] = epochDay;
+            return;
+        }
+        if ((used + 1) * 2 > keys.length) rehash(size * 4 > keys.length ? keys.length * 2 : keys.length);
+        int mask = keys.length - 1;
+        int i = mix(bookId) & mask;
+        while (keys[i] > 0) i = (i + 1) & mask;
+        if (keys[i] == EMPTY) used++;
+        keys[i] = bookId;
+        values[i] = epochDay;
+        size++;
+    }
+
+    private int find(int bookId) {
+        int mask = keys.length - 1;
+        int i = mix(bookId) & mask;
+        while (keys[i] != EMPTY) {
+            if (keys[i] == bookId) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        clearSlots(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] > 0) insert(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    private void clearSlots(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        size = 0;
+        used = 0;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,210 @@
+package edu.aitu.library.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class EntityCache<K, V> {
+    private final int windowMax;
+    private final int mainMax;
+    private final int tombstoneMax;
+    private final long ttlNanos;
+
+    // Lookups only touch data. The window/main order and the sketch are the admission policy and are guarded
+    // by policyLock; a get that finds it busy skips recording the access instead of waiting.
+    private final ConcurrentHashMap<K, Node<V>> data = new ConcurrentHashMap<>();
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final LinkedHashMap<K, Boolean> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Boolean> main = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+
+    // Invalidating a key leaves a tombstone stamped from clock, and a load started before that stamp is dropped.
+    // invalidateAll and tombstone pruning move clearedAt instead, which drops every load started before it.
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger tombstones = new AtomicInteger();
+    private final AtomicLong clearedAt = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder staleLoadsDropped = new LongAdder();
+    private long evictions;
+
+    public EntityCache(int maxSize, Duration ttl) {
+        if (maxSize < 2) throw new IllegalArgumentException("Cache size must be at least 2: " + maxSize);
+        this.windowMax = Math.max(1, maxSize / 100);
+        this.mainMax = maxSize - windowMax;
+        this.tombstoneMax = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.sketch = new FrequencySketch(maxSize);
+    }
+
+    public V get(K key) {
+        Node<V> node = data.get(key);
+        if (node != null && node.value != null && System.nanoTime() - node.loadedAt > ttlNanos) {
+            if (dropValue(key, node)) expirations.increment();
+            forget(key);
+            misses.increment();
+            return null;
+        }
+        recordAccess(key);
+        if (node == null || node.value == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return node.value;
+    }
+
+    public long generation() {
+        return clock.get();
+    }
+
+    public boolean putIfCurrent(K key, V value, long loadedAtGeneration) {
+        boolean[] stored = new boolean[1];
+        data.compute(key, (k, current) -> {
+            if (loadedAtGeneration < clearedAt.get() || (current != null && current.invalidatedAt > loadedAtGeneration)) {
+                return current;
+            }
+            stored[0] = true;
+            return new Node<>(value, System.nanoTime(), current == null ? 0 : current.invalidatedAt);
+        });
+        if (!stored[0]) {
+            staleLoadsDropped.increment();
+            return false;
+        }
+        admit(key);
+        return true;
+    }
+
+    public void put(K key, V value) {
+        data.compute(key, (k, current) -> new Node<>(value, System.nanoTime(), current == null ? 0 : current.invalidatedAt));
+        admit(key);
+    }
+
+    public void invalidate(K key) {
+        data.put(key, new Node<>(null, 0, clock.incrementAndGet()));
+        forget(key);
+        tombstones.incrementAndGet();
+        pruneTombstonesIfFull();
+    }
+
+    public void invalidateAll() {
+        clearedAt.accumulateAndGet(clock.incrementAndGet(), Math::max);
+        data.clear();
+        tombstones.set(0);
+        policyLock.lock();
+        try {
+            window.clear();
+            main.clear();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    public CacheStats stats() {
+        policyLock.lock();
+        try {
+            return new CacheStats(hits.sum(), misses.sum(), evictions, expirations.sum(), staleLoadsDropped.sum(),
+                    window.size() + main.size());
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private void recordAccess(K key) {
+        if (!policyLock.tryLock()) return;
+        try {
+            sketch.increment(key);
+            if (window.get(key) == null) main.get(key);
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private void admit(K key) {
+        policyLock.lock();
+        try {
+            if (main.get(key) != null) return;
+            window.put(key, Boolean.TRUE);
+            if (window.size() > windowMax) admitFromWindow();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private void forget(K key) {
+        policyLock.lock();
+        try {
+            window.remove(key);
+            main.remove(key);
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private void admitFromWindow() {
+        K candidate = removeEldest(window);
+        if (main.size() < mainMax) {
+            main.put(candidate, Boolean.TRUE);
+            return;
+        }
+
+        K victim = main.keySet().iterator().next();
+        evictions++;
+        if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+            main.remove(victim);
+            main.put(candidate, Boolean.TRUE);
+            dropValue(victim, null);
+        } else {
+            dropValue(candidate, null);
+        }
+    }
+
+    // An entry that replaced a tombstone goes back to being one when it is dropped, so a load older than that
+    // invalidation still loses.
+    private boolean dropValue(K key, Node<V> expected) {
+        boolean[] dropped = new boolean[1];
+        data.computeIfPresent(key, (k, n) -> {
+            if (n.value == null || (expected != null && n != expected)) return n;
+            dropped[0] = true;
+            if (n.invalidatedAt == 0) return null;
+            tombstones.incrementAndGet();
+            return new Node<>(null, 0, n.invalidatedAt);
+        });
+        pruneTombstonesIfFull();
+        return dropped[0];
+    }
+
+    private void pruneTombstonesIfFull() {
+        if (tombstones.get() <= tombstoneMax) return;
+        long cleared = clock.incrementAndGet();
+        clearedAt.accumulateAndGet(cleared, Math::max);
+        tombstones.set(0);
+        data.values().removeIf(n -> n.value == null && n.invalidatedAt <= cleared);
+    }
+
+    private static <K> K removeEldest(LinkedHashMap<K, Boolean> map) {
+        Iterator<K> it = map.keySet().iterator();
+        K eldest = it.next();
+        it.remove();
+        return eldest;
+    }
+
+    private static final class Node<V> {
+        final V value;
+        final long loadedAt;
+        final long invalidatedAt;
+
+        Node(V value, long loadedAt, long invalidatedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+            this.invalidatedAt = invalidatedAt;
+        }
+    }
+}
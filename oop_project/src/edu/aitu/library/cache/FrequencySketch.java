@@ -0,0 +1,61 @@
+package edu.aitu.library.cache;
+
+class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final byte[][] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maxSize) {
+        int width = Integer.highestOneBit(Math.max(16, maxSize * 4) - 1) << 1;
+        this.counters = new byte[DEPTH][width];
+        this.mask = width - 1;
+        this.sampleSize = Math.max(10 * maxSize, 100);
+    }
+
+    void increment(Object key) {
+        int h = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int idx = index(h, i);
+            if (counters[i][idx] < MAX_COUNT) {
+                counters[i][idx]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) reset();
+    }
+
+    int frequency(Object key) {
+        int h = spread(key.hashCode());
+        int min = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            min = Math.min(min, counters[i][index(h, i)]);
+        }
+        return min;
+    }
+
+    private void reset() {
+        for (byte[] row : counters) {
+            for (int j = 0; j < row.length; j++) row[j] = (byte) (row[j] >>> 1);
+        }
+        additions /= 2;
+    }
+
+    private int index(int h, int row) {
+        int x = h * SEEDS[row];
+        x ^= x >>> 16;
+        return x & mask;
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 17;
+        h *= 0xED5AD4BB;
+        h ^= h >>> 11;
+        return h;
+    }
+}
@@ -0,0 +1,255 @@
+package edu.aitu.library.cache;
+
+import edu.aitu.library.model.Reservation;
+import edu.aitu.library.model.ReservationPosition;
+import edu.aitu.library.model.ReservationStatus;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ReservationIndex {
+
+    public static final class Entry {
+        private final Reservation reservation;
+        private final int loanDays;
+
+        public Entry(Reservation reservation, int loanDays) {
+            this.reservation = reservation;
+            this.loanDays = loanDays;
+        }
+
+        public Reservation getReservation() { return reservation; }
+        public int getLoanDays() { return loanDays; }
+    }
+
+    public static final class Pending {
+        private final List<Entry> added = new ArrayList<>();
+        private final Set<Integer> removed = new HashSet<>();
+
+        public void add(Entry e) { added.add(e); }
+        public void unadd(Entry e) { added.remove(e); }
+        public void remove(int reservationId) { removed.add(reservationId); }
+        public void unremove(int reservationId) { removed.remove(reservationId); }
+    }
+
+    private final Map<Integer, BookQueue> queues = new HashMap<>();
+    private final Map<Integer, Integer> bookByReservation = new HashMap<>();
+    private boolean loaded;
+    private long loads;
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    public synchronized void load(Iterable<Entry> active) {
+        queues.clear();
+        bookByReservation.clear();
+        for (Entry e : active) {
+            if (e.reservation.isActive()) insert(e);
+        }
+        loaded = true;
+        loads++;
+    }
+
+    public synchronized void clear() {
+        queues.clear();
+        bookByReservation.clear();
+        loaded = false;
+    }
+
+    public synchronized Reservation next(int bookId, Pending pending) {
+        return first(bookId, 0, pending);
+    }
+
+    public synchronized Reservation oldestFor(int userId, int bookId, Pending pending) {
+        return first(bookId, userId, pending);
+    }
+
+    public synchronized boolean hasActive(int userId, int bookId, Pending pending) {
+        return first(bookId, userId, pending) != null;
+    }
+
+    public synchronized int position(int userId, int bookId) {
+        BookQueue q = queues.get(bookId);
+        if (q == null) return 0;
+        return q.indexOfUser(userId) + 1;
+    }
+
+    public synchronized ReservationPosition positionOf(int userId, int bookId, LocalDate availableFrom, LocalDate today) {
+        BookQueue q = queues.get(bookId);
+        int i = q == null ? -1 : q.indexOfUser(userId);
+        if (i < 0) return null;
+        return estimate(q, bookId, userId, q.ids[i], i, availableFrom, today);
+    }
+
+    public synchronized ReservationPosition nextPosition(int bookId, LocalDate availableFrom, LocalDate today) {
+        BookQueue q = queues.get(bookId);
+        return estimate(q, bookId, 0, 0, q == null ? 0 : q.size, availableFrom, today);
+    }
+
+    public synchronized int queueLength(int bookId) {
+        BookQueue q = queues.get(bookId);
+        return q == null ? 0 : q.size;
+    }
+
+    public synchronized List<Reservation> queue(int bookId) {
+        BookQueue q = queues.get(bookId);
+        if (q == null) return List.of();
+        List<Reservation> list = new ArrayList<>(q.size);
+        for (int i = 0; i < q.size; i++) list.add(q.get(bookId, i));
+        return list;
+    }
+
+    public synchronized int size() {
+        return bookByReservation.size();
+    }
+
+    public synchronized int queuedBooks() {
+        return queues.size();
+    }
+
+    public synchronized long getLoads() {
+        return loads;
+    }
+
+    public synchronized void add(Entry e) {
+        if (!loaded || !e.reservation.isActive() || bookByReservation.containsKey(e.reservation.getId())) return;
+        insert(e);
+    }
+
+    public synchronized Entry remove(int reservationId) {
+        if (!loaded) return null;
+        Integer bookId = bookByReservation.remove(reservationId);
+        if (bookId == null) return null;
+        BookQueue q = queues.get(bookId);
+        int i = q.indexOf(reservationId);
+        Entry removed = q.entry(bookId, i);
+        q.removeAt(i);
+        if (q.size == 0) queues.remove(bookId);
+        return removed;
+    }
+
+    public synchronized List<Entry> removeExpiredBefore(LocalDate today) {
+        List<Entry> expired = new ArrayList<>();
+        if (!loaded) return expired;
+        long cutoff = today.toEpochDay();
+        Iterator<Map.Entry<Integer, BookQueue>> it = queues.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, BookQueue> e = it.next();
+            BookQueue q = e.getValue();
+            for (int i = q.size - 1; i >= 0; i--) {
+                if (q.expiresAt[i] >= cutoff) continue;
+                expired.add(q.entry(e.getKey(), i));
+                bookByReservation.remove(q.ids[i]);
+                q.removeAt(i);
+            }
+            if (q.size == 0) it.remove();
+        }
+        return expired;
+    }
+
+    private Reservation first(int bookId, int userId, Pending pending) {
+        BookQueue q = queues.get(bookId);
+        if (q != null) {
+            for (int i = 0; i < q.size; i++) {
+                if (userId > 0 && q.users[i] != userId) continue;
+                if (pending == null || !pending.removed.contains(q.ids[i])) return q.get(bookId, i);
+            }
+        }
+        if (pending == null) return null;
+        for (Entry e : pending.added) {
+            Reservation r = e.reservation;
+            if (r.getBookId() != bookId || (userId > 0 && r.getUserId() != userId)) continue;
+            if (!pending.removed.contains(r.getId())) return r;
+        }
+        return null;
+    }
+
+    private void insert(Entry e) {
+        queues.computeIfAbsent(e.reservation.getBookId(), id -> new BookQueue()).insert(e);
+        bookByReservation.put(e.reservation.getId(), e.reservation.getBookId());
+    }
+
+    private static ReservationPosition estimate(BookQueue q, int bookId, int userId, int reservationId, int ahead,
+                                                LocalDate availableFrom, LocalDate today) {
+        long days = 0;
+        for (int i = 0; i < ahead; i++) days += q.loanDays[i];
+        LocalDate start = availableFrom.isAfter(today) ? availableFrom : today;
+        LocalDate availableOn = start.plusDays(days);
+        int queueLength = q == null ? 0 : q.size;
+        return new ReservationPosition(bookId, userId, reservationId, ahead + 1, queueLength,
+                availableOn, availableOn.toEpochDay() - today.toEpochDay());
+    }
+
+    private static final class BookQueue {
+        private int[] ids = new int[4];
+        private int[] users = new int[4];
+        private int[] createdAt = new int[4];
+        private int[] expiresAt = new int[4];
+        private int[] loanDays = new int[4];
+        private int size;
+
+        void insert(Entry e) {
+            Reservation r = e.reservation;
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                users = Arrays.copyOf(users, capacity);
+                createdAt = Arrays.copyOf(createdAt, capacity);
+                expiresAt = Arrays.copyOf(expiresAt, capacity);
+                loanDays = Arrays.copyOf(loanDays, capacity);
+            }
+            int at = size;
+            while (at > 0 && ids[at - 1] > r.getId()) at--;
+            shift(at, at + 1, size - at);
+            ids[at] = r.getId();
+            users[at] = r.getUserId();
+            createdAt[at] = (int) r.getCreatedAt().toEpochDay();
+            expiresAt[at] = (int) r.getExpiresAt().toEpochDay();
+            loanDays[at] = e.loanDays;
+            size++;
+        }
+
+        void removeAt(int i) {
+            shift(i + 1, i, size - i - 1);
+            size--;
+        }
+
+        int indexOf(int reservationId) {
+            int i = Arrays.binarySearch(ids, 0, size, reservationId);
+            return i < 0 ? -1 : i;
+        }
+
+        int indexOfUser(int userId) {
+            for (int i = 0; i < size; i++) {
+                if (users[i] == userId) return i;
+            }
+            return -1;
+        }
+
+        Reservation get(int bookId, int i) {
+            return new Reservation(ids[i], users[i], bookId, ReservationStatus.ACTIVE,
+                    LocalDate.ofEpochDay(createdAt[i]), LocalDate.ofEpochDay(expiresAt[i]), null);
+        }
+
+        Entry entry(int bookId, int i) {
+            return new Entry(get(bookId, i), loanDays[i]);
+        }
+
+        private void shift(int from, int to, int length) {
+            if (length <= 0) return;
+            System.arraycopy(ids, from, ids, to, length);
+            System.arraycopy(users, from, users, to, length);
+            System.arraycopy(createdAt, from, createdAt, to, length);
+            System.arraycopy(expiresAt, from, expiresAt, to, length);
+            System.arraycopy(loanDays, from, loanDays, to, length);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package edu.aitu.library.data;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+class ConnectionPool implements AutoCloseable {
+
+    interface Opener {
+        Connection open() throws SQLException;
+    }
+
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    private final String name;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final Opener opener;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<Entry> idle = new ConcurrentLinkedDeque<>();
+    private final List<Entry> all = new CopyOnWriteArrayList<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private volatile boolean closed;
+
+    ConnectionPool(String name, int maxSize, long borrowTimeoutMillis, Opener opener) {
+        if (maxSize < 1) throw new IllegalArgumentException("Pool size must be at least 1: " + name);
+        this.name = name;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.opener = opener;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    Connection borrow() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed: " + name);
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLException("Timed out after " + borrowTimeoutMillis + "ms waiting for a " + name + " connection.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a " + name + " connection.", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        Entry entry = idle.pollFirst();
+        if (entry == null) {
+            try {
+                Connection physical = opener.open();
+                entry = new Entry(physical, new StatementCache(physical, STATEMENT_CACHE_SIZE));
+                all.add(entry);
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+        active.incrementAndGet();
+        return wrap(entry);
+    }
+
+    PoolStats stats() {
+        return new PoolStats(name, maxSize, active.get(), idle.size(),
+                borrows.sum(), timeouts.sum(), totalWaitNanos.sum(), maxWaitNanos.get());
+    }
+
+    StatementCacheStats statementCacheStats() {
+        long hits = 0, misses = 0, evictions = 0;
+        int cached = 0;
+        for (Entry e : all) {
+            hits += e.cache.getHits();
+            misses += e.cache.getMisses();
+            evictions += e.cache.getEvictions();
+            cached += e.cache.size();
+        }
+        return new StatementCacheStats(hits, misses, evictions, cached);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Entry e;
+        while ((e = idle.pollFirst()) != null) {
+            discard(e);
+        }
+    }
+
+    private void recordWait(long waited) {
+        borrows.increment();
+        totalWaitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+    }
+
+    private void release(Entry entry) {
+        active.decrementAndGet();
+        RuntimeException hookFailure = null;
+        try {
+            Connection physical = entry.physical;
+            if (closed || physical.isClosed()) {
+                discard(entry);
+                return;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            try {
+                entry.hooks.rolledBack();
+            } catch (RuntimeException e) {
+                hookFailure = e;
+            }
+            idle.offerFirst(entry);
+        } catch (SQLException e) {
+            discard(entry);
+        } finally {
+            permits.release();
+        }
+        if (hookFailure != null) throw hookFailure;
+    }
+
+    private void discard(Entry entry) {
+        all.remove(entry);
+        entry.cache.close();
+        try { entry.physical.close(); } catch (Exception ignored) {}
+    }
+
+    private Connection wrap(Entry entry) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new Handle(entry));
+    }
+
+    private static final class Entry {
+        final Connection physical;
+        final StatementCache cache;
+        final TransactionHooks hooks = new TransactionHooks();
+
+        Entry(Connection physical, StatementCache cache) {
+            this.physical = physical;
+            this.cache = cache;
+        }
+    }
+
+    private final class Handle implements InvocationHandler {
+        private final Entry entry;
+        private final Connection physical;
+        private boolean released;
+
+        Handle(Entry entry) {
+            this.entry = entry;
+            this.physical = entry.physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!released) {
+                        released = true;
+                        release(entry);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return released || physical.isClosed();
+                }
+                case "commit" -> {
+                    ensureBorrowed();
+                    physical.commit();
+                    entry.hooks.committed();
+                    return null;
+                }
+                case "rollback" -> {
+                    ensureBorrowed();
+                    if (args == null) {
+                        physical.rollback();
+                        entry.hooks.rolledBack();
+                    } else {
+                        physical.rollback((Savepoint) args[0]);
+                        entry.hooks.rolledBackTo((Savepoint) args[0]);
+                    }
+                    return null;
+                }
+                case "setSavepoint" -> {
+                    ensureBorrowed();
+                    Savepoint savepoint = args == null ? physical.setSavepoint() : physical.setSavepoint((String) args[0]);
+                    entry.hooks.savepointSet(savepoint);
+                    return savepoint;
+                }
+                case "releaseSavepoint" -> {
+                    ensureBorrowed();
+                    physical.releaseSavepoint((Savepoint) args[0]);
+                    entry.hooks.savepointReleased((Savepoint) args[0]);
+                    return null;
+                }
+                case "setAutoCommit" -> {
+                    ensureBorrowed();
+                    boolean wasInTransaction = !physical.getAutoCommit();
+                    physical.setAutoCommit((Boolean) args[0]);
+                    if (wasInTransaction && (Boolean) args[0]) entry.hooks.committed();
+                    return null;
+                }
+                case "isWrapperFor" -> {
+                    if (args[0] == StatementCache.class || args[0] == TransactionHooks.class) return true;
+                    return physical.isWrapperFor((Class<?>) args[0]);
+                }
+                case "unwrap" -> {
+                    if (args[0] == StatementCache.class) {
+                        ensureBorrowed();
+                        return entry.cache;
+                    }
+                    if (args[0] == TransactionHooks.class) {
+                        ensureBorrowed();
+                        return entry.hooks;
+                    }
+                    return physical.unwrap((Class<?>) args[0]);
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled[" + name + "]" + (released ? "(released)" : "");
+                }
+                default -> {
+                    ensureBorrowed();
+                    try {
+                        return method.invoke(physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            }
+        }
+
+        private void ensureBorrowed() throws SQLException {
+            if (released) throw new SQLException("Connection has already been returned to the pool.");
+        }
+    }
+}
@@ -3,20 +3,103 @@ package edu.aitu.library.data;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class DB implements AutoCloseable {
+    private static final int DEFAULT_READ_POOL_SIZE = 4;
+    private static final long BORROW_TIMEOUT_MILLIS = 30_000;
 
-public class DB {
     private final String url;
+    private final ConnectionPool writePool;
+    private final ConnectionPool readPool;
+    private final AtomicBoolean opened = new AtomicBoolean();
+    private volatile QueryTracer tracer;
 
     public DB(String url) {
+        this(url, DEFAULT_READ_POOL_SIZE);
+    }
+
+    public DB(String url, int readPoolSize) {
+        this(url, readPoolSize, 1);
+    }
+
+    public DB(String url, int readPoolSize, int writePoolSize) {
         this.url = url;
+        this.writePool = new ConnectionPool("write", writePoolSize, BORROW_TIMEOUT_MILLIS, () -> open(false));
+        this.readPool = new ConnectionPool("read", readPoolSize, BORROW_TIMEOUT_MILLIS, () -> open(true));
     }
 
     public Connection getConnection() throws SQLException {
+        return writePool.borrow();
+    }
+
+    public Connection getReadConnection() throws SQLException {
+        return readPool.borrow();
+    }
+
+    public void enableTracing(QueryTracer tracer) {
+        if (opened.get()) {
+            throw new IllegalStateException("Query tracing must be enabled before the first connection is opened.");
+        }
+        this.tracer = tracer;
+    }
+
+    public QueryTracer getQueryTracer() {
+        return tracer;
+    }
+
+    public PoolStats writePoolStats() {
+        return writePool.stats();
+    }
+
+    public PoolStats readPoolStats() {
+        return readPool.stats();
+    }
+
+    public StatementCacheStats statementCacheStats() {
+        StatementCacheStats w = writePool.statementCacheStats();
+        StatementCacheStats r = readPool.statementCacheStats();
+        return new StatementCacheStats(
+                w.getHits() + r.getHits(),
+                w.getMisses() + r.getMisses(),
+                w.getEvictions() + r.getEvictions(),
+                w.getCached() + r.getCached());
+    }
+
+    @Override
+    public void close() {
+        readPool.close();
+        writePool.close();
+    }
+
+    private Connection open(boolean readOnly) throws SQLException {
         try {
             Class.forName("org.sqlite.JDBC");
         } catch (ClassNotFoundException e) {
             throw new SQLException("SQLite JDBC driver not found.", e);
         }
-        return DriverManager.getConnection(url);
+
+        opened.set(true);
+        Properties props = new Properties();
+        if (!readOnly) props.setProperty("transaction_mode", "IMMEDIATE");
+
+        Connection conn = DriverManager.getConnection(url, props);
+        try (Statement st = conn.createStatement()) {
+            st.execute("PRAGMA journal_mode = WAL;");
+            st.execute("PRAGMA synchronous = NORMAL;");
+            st.execute("PRAGMA cache_size = -16000;");
+            st.execute("PRAGMA mmap_size = 268435456;");
+            st.execute("PRAGMA temp_store = MEMORY;");
+            st.execute("PRAGMA busy_timeout = 5000;");
+            st.execute("PRAGMA foreign_keys = ON;");
+            if (readOnly) st.execute("PRAGMA query_only = ON;");
+        } catch (SQLException e) {
+            try { conn.close(); } catch (Exception ignored) {}
+            throw e;
+        }
+        QueryTracer t = tracer;
+        return t == null ? conn : TracingJdbc.wrap(conn, t);
     }
 }
@@ -0,0 +1,45 @@
+package edu.aitu.library.data;
+
+public class PoolStats {
+    private final String name;
+    private final int maxSize;
+    private final int active;
+    private final int idle;
+    private final long borrows;
+    private final long timeouts;
+    private final long totalWaitNanos;
+    private final long maxWaitNanos;
+
+    public PoolStats(String name, int maxSize, int active, int idle,
+                     long borrows, long timeouts, long totalWaitNanos, long maxWaitNanos) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.active = active;
+        this.idle = idle;
+        this.borrows = borrows;
+        this.timeouts = timeouts;
+        this.totalWaitNanos = totalWaitNanos;
+        this.maxWaitNanos = maxWaitNanos;
+    }
+
+    public String getName() { return name; }
+    public int getMaxSize() { return maxSize; }
+    public int getActive() { return active; }
+    public int getIdle() { return idle; }
+    public long getBorrows() { return borrows; }
+    public long getTimeouts() { return timeouts; }
+    public long getTotalWaitNanos() { return totalWaitNanos; }
+    public long getMaxWaitNanos() { return maxWaitNanos; }
+
+    public double getAvgWaitMillis() {
+        return borrows == 0 ? 0.0 : totalWaitNanos / 1_000_000.0 / borrows;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolStats{name=" + name + ", max=" + maxSize + ", active=" + active + ", idle=" + idle +
+                ", borrows=" + borrows + ", timeouts=" + timeouts +
+                ", avgWaitMs=" + String.format("%.3f", getAvgWaitMillis()) +
+                ", maxWaitMs=" + String.format("%.3f", maxWaitNanos / 1_000_000.0) + "}";
+    }
+}
@@ -0,0 +1,78 @@
+package edu.aitu.library.data;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class QueryTracer {
+    private final long slowThresholdNanos;
+    private final PrintStream slowLog;
+    private final ConcurrentHashMap<String, SqlStats> stats = new ConcurrentHashMap<>();
+    private final LongAdder slowQueries = new LongAdder();
+
+    public QueryTracer(Duration slowThreshold) {
+        this(slowThreshold, System.out);
+    }
+
+    public QueryTracer(Duration slowThreshold, PrintStream slowLog) {
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.slowLog = slowLog;
+    }
+
+    void record(String sql, long nanos, long rows, Object[] params) {
+        stats.computeIfAbsent(sql, SqlStats::new).record(nanos, rows);
+        if (nanos >= slowThresholdNanos) {
+            slowQueries.increment();
+            slowLog.println("[slow-query " + LocalDateTime.now().withNano(0) + "] " +
+                    String.format("%.2fms", nanos / 1e6) + " rows=" + rows +
+                    " params=" + describe(params) + " sql=" + sql);
+        }
+    }
+
+    public long getSlowQueries() {
+        return slowQueries.sum();
+    }
+
+    public List<SqlStats> snapshot() {
+        List<SqlStats> list = new ArrayList<>(stats.values());
+        list.sort(Comparator.comparingLong(SqlStats::getTotalNanos).reversed());
+        return list;
+    }
+
+    public String report(int top) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%10s %10s %10s %10s %10s  %s%n", "count", "total ms", "mean us", "max us", "rows", "sql"));
+        List<SqlStats> list = snapshot();
+        for (SqlStats s : list.subList(0, Math.min(top, list.size()))) {
+            sb.append(String.format("%,10d %,10.1f %,10.1f %,10.1f %,10d  %s%n",
+                    s.getExecutions(), s.getTotalNanos() / 1e6, s.getMeanMicros(), s.getMaxNanos() / 1e3,
+                    s.getRows(), s.getSql()));
+        }
+        return sb.toString();
+    }
+
+    public void reset() {
+        stats.clear();
+        slowQueries.reset();
+    }
+
+    static String normalize(String sql) {
+        return sql.strip().replaceAll("\\s+", " ");
+    }
+
+    private static String describe(Object[] params) {
+        if (params == null) return "[]";
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < params.length; i++) {
+            if (i > 0) sb.append(", ");
+            Object p = params[i];
+            sb.append(p instanceof String ? "'" + p + "'" : String.valueOf(p));
+        }
+        return sb.append(']').toString();
+    }
+}
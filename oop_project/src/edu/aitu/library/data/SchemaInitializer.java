@@ -3,11 +3,48 @@ package edu.aitu.library.data;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 
 public class SchemaInitializer {
 
+    private interface Step {
+        void apply(Connection conn) throws Exception;
+    }
+
+    private static final class Migration {
+        final int version;
+        final String description;
+        final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "base schema and legacy column backfills", SchemaInitializer::baseSchema),
+            new Migration(2, "books full-text index", SchemaInitializer::ensureSearchIndex),
+            new Migration(3, "partial indexes for open loans and active reservations", SchemaInitializer::ensureHotPathIndexes),
+            new Migration(4, "per-user open loan counter", SchemaInitializer::addOpenLoanCounter),
+            new Migration(5, "overdue fine accruals and summaries", SchemaInitializer::addOverdueTables),
+            new Migration(6, "circulation statistics tables", SchemaInitializer::addCirculationStats),
+            new Migration(7, "per-row overdue accrual dates and return trigger", SchemaInitializer::addOverdueAccrualDates)
+    );
+
+    public static final int LATEST_VERSION = MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+
     public static void init(Connection conn) throws Exception {
+        int current = userVersion(conn);
+        if (current == LATEST_VERSION) return;
+        if (current > LATEST_VERSION) {
+            throw new Exception("Database schema version " + current +
+                    " is newer than this application supports (" + LATEST_VERSION + ").");
+        }
+
         boolean oldAuto = conn.getAutoCommit();
         try {
             conn.setAutoCommit(false);
@@ -16,11 +53,15 @@ public class SchemaInitializer {
                 st.execute("PRAGMA foreign_keys = ON;");
             }
 
-            ensureUsers(conn);
-            ensureBooks(conn);
-            ensureLoans(conn);
-            ensureReservations(conn);
-            ensureIndexes(conn);
+            for (Migration m : MIGRATIONS) {
+                if (m.version <= current) continue;
+                try {
+                    m.step.apply(conn);
+                } catch (Exception e) {
+                    throw new Exception("Migration " + m.version + " (" + m.description + ") failed: " + e.getMessage(), e);
+                }
+                setUserVersion(conn, m.version);
+            }
 
             conn.commit();
         } catch (Exception e) {
@@ -31,6 +72,27 @@ public class SchemaInitializer {
         }
     }
 
+    public static int userVersion(Connection conn) throws Exception {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA user_version;")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void setUserVersion(Connection conn, int version) throws Exception {
+        try (Statement st = conn.createStatement()) {
+            st.execute("PRAGMA user_version = " + version + ";");
+        }
+    }
+
+    private static void baseSchema(Connection conn) throws Exception {
+        ensureUsers(conn);
+        ensureBooks(conn);
+        ensureLoans(conn);
+        ensureReservations(conn);
+        ensureIndexes(conn);
+    }
+
     private static void ensureUsers(Connection conn) throws Exception {
         try (Statement st = conn.createStatement()) {
             st.execute("""
@@ -153,6 +215,329 @@ public class SchemaInitializer {
         }
     }
 
+    private static void ensureHotPathIndexes(Connection conn) throws Exception {
+        try (Statement st = conn.createStatement()) {
+            st.execute("DROP INDEX IF EXISTS idx_res_active_book;");
+            st.execute("""
+                CREATE INDEX IF NOT EXISTS idx_loans_open_user
+                ON loans(user_id) WHERE return_date IS NULL;
+            """);
+            st.execute("""
+                CREATE INDEX IF NOT EXISTS idx_loans_open_book
+                ON loans(book_id, id) WHERE return_date IS NULL;
+            """);
+            st.execute("""
+                CREATE INDEX IF NOT EXISTS idx_res_active_fifo
+                ON reservations(book_id, id) WHERE status = 'ACTIVE';
+            """);
+            st.execute("""
+                CREATE INDEX IF NOT EXISTS idx_res_active_user_book
+                ON reservations(user_id, book_id) WHERE status = 'ACTIVE';
+            """);
+            st.execute("""
+                CREATE INDEX IF NOT EXISTS idx_res_active_expiry
+                ON reservations(expires_at) WHERE status = 'ACTIVE';
+            """);
+        }
+    }
+
+    private static void addOpenLoanCounter(Connection conn) throws Exception {
+        if (!columnExists(conn, "users", "open_loans")) {
+            try (Statement st = conn.createStatement()) {
+                st.execute("ALTER TABLE users ADD COLUMN open_loans INTEGER NOT NULL DEFAULT 0;");
+            }
+        }
+        try (Statement st = conn.createStatement()) {
+            st.execute("""
+                UPDATE users
+                SET open_loans = (SELECT COUNT(*) FROM loans WHERE loans.user_id = users.id AND return_date IS NULL);
+            """);
+        }
+    }
+
+    private static void addOverdueTables(Connection conn) throws Exception {
+        try (Statement st = conn.createStatement()) {
+            st.execute("""
+                CREATE INDEX IF NOT EXISTS idx_loans_open_due
+                ON loans(due_date) WHERE return_date IS NULL;
+            """);
+            st.execute("""
+                CREATE TABLE IF NOT EXISTS overdue_fines (
+                    loan_id INTEGER PRIMARY KEY,
+                    user_id INTEGER NOT NULL,
+                    book_id INTEGER NOT NULL,
+                    due_date TEXT NOT NULL,
+                    days_overdue INTEGER NOT NULL,
+                    accrued_cents INTEGER NOT NULL
+                );
+            """);
+            st.execute("""
+                CREATE TABLE IF NOT EXISTS overdue_user_summary (
+                    user_id INTEGER PRIMARY KEY,
+                    overdue_loans INTEGER NOT NULL,
+                    accrued_cents INTEGER NOT NULL
+                );
+            """);
+            st.execute("""
+                CREATE TABLE IF NOT EXISTS overdue_book_summary (
+                    book_id INTEGER PRIMARY KEY,
+                    overdue_loans INTEGER NOT NULL,
+                    accrued_cents INTEGER NOT NULL
+                );
+            """);
+            st.execute("""
+                CREATE INDEX IF NOT EXISTS idx_overdue_user_cents
+                ON overdue_user_summary(accrued_cents);
+            """);
+            st.execute("""
+                CREATE INDEX IF NOT EXISTS idx_overdue_book_cents
+                ON overdue_book_summary(accrued_cents);
+            """);
+            st.execute("""
+                CREATE TABLE IF NOT EXISTS overdue_runs (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    as_of TEXT NOT NULL,
+                    mode TEXT NOT NULL,
+                    max_loan_id INTEGER NOT NULL,
+                    chunks INTEGER NOT NULL,
+                    overdue_loans INTEGER NOT NULL,
+                    accrued_cents INTEGER NOT NULL,
+                    users INTEGER NOT NULL,
+                    books INTEGER NOT NULL,
+                    millis INTEGER NOT NULL
+                );
+            """);
+        }
+    }
+
+    private static void addCirculationStats(Connection conn) throws Exception {
+        try (Statement st = conn.createStatement()) {
+            st.execute("""
+                CREATE TABLE IF NOT EXISTS stats_daily (
+                    day TEXT PRIMARY KEY,
+                    loans_started INTEGER NOT NULL DEFAULT 0,
+                    loans_returned INTEGER NOT NULL DEFAULT 0,
+                    reservations_fulfilled INTEGER NOT NULL DEFAULT 0,
+                    reservations_expired INTEGER NOT NULL DEFAULT 0
+                );
+            """);
+            st.execute("""
+                CREATE TABLE IF NOT EXISTS stats_books (
+                    book_id INTEGER PRIMARY KEY,
+                    loans INTEGER NOT NULL,
+                    loan_days INTEGER NOT NULL,
+                    first_loan_date TEXT NOT NULL,
+                    open_since TEXT NULL
+                );
+            """);
+            st.execute("""
+                CREATE INDEX IF NOT EXISTS idx_stats_books_loans
+                ON stats_books(loans);
+            """);
+            st.execute("""
+                CREATE TABLE IF NOT EXISTS stats_roles (
+                    role TEXT PRIMARY KEY,
+                    loans_closed INTEGER NOT NULL,
+                    loan_days INTEGER NOT NULL
+                );
+            """);
+            st.execute("""
+                CREATE TABLE IF NOT EXISTS stats_totals (
+                    id INTEGER PRIMARY KEY CHECK (id = 1),
+                    loans_started INTEGER NOT NULL DEFAULT 0,
+                    loans_returned INTEGER NOT NULL DEFAULT 0,
+                    reservations_fulfilled INTEGER NOT NULL DEFAULT 0,
+                    reservations_expired INTEGER NOT NULL DEFAULT 0
+                );
+            """);
+            st.execute("""
+                CREATE TRIGGER IF NOT EXISTS stats_loans_ai AFTER INSERT ON loans BEGIN
+                    INSERT INTO stats_daily(day, loans_started) VALUES (new.loan_date, 1)
+                    ON CONFLICT(day) DO UPDATE SET loans_started = loans_started + 1;
+                    INSERT INTO stats_daily(day, loans_returned) SELECT new.return_date, 1 WHERE new.return_date IS NOT NULL
+                    ON CONFLICT(day) DO UPDATE SET loans_returned = loans_returned + 1;
+                    INSERT INTO stats_books(book_id, loans, loan_days, first_loan_date, open_since)
+                    VALUES (new.book_id, 1,
+                            COALESCE(CAST(julianday(new.return_date) - julianday(new.loan_date) AS INTEGER), 0),
+                            new.loan_date,
+                            CASE WHEN new.return_date IS NULL THEN new.loan_date END)
+                    ON CONFLICT(book_id) DO UPDATE SET
+                        loans = loans + 1,
+                        loan_days = loan_days + excluded.loan_days,
+                        first_loan_date = min(first_loan_date, excluded.first_loan_date),
+                        open_since = COALESCE(excluded.open_since, open_since);
+                    INSERT INTO stats_roles(role, loans_closed, loan_days)
+                    SELECT role, 1, CAST(julianday(new.return_date) - julianday(new.loan_date) AS INTEGER)
+                    FROM users WHERE id = new.user_id AND new.return_date IS NOT NULL
+                    ON CONFLICT(role) DO UPDATE SET
+                        loans_closed = loans_closed + 1,
+                        loan_days = loan_days + excluded.loan_days;
+                    UPDATE stats_totals
+                    SET loans_started = loans_started + 1,
+                        loans_returned = loans_returned + (new.return_date IS NOT NULL)
+                    WHERE id = 1;
+                END;
+            """);
+            st.execute("""
+                CREATE TRIGGER IF NOT EXISTS stats_loans_returned AFTER UPDATE OF return_date ON loans
+                WHEN old.return_date IS NULL AND new.return_date IS NOT NULL BEGIN
+                    INSERT INTO stats_daily(day, loans_returned) VALUES (new.return_date, 1)
+                    ON CONFLICT(day) DO UPDATE SET loans_returned = loans_returned + 1;
+                    UPDATE stats_books
+                    SET loan_days = loan_days + CAST(julianday(new.return_date) - julianday(new.loan_date) AS INTEGER),
+                        open_since = NULL
+                    WHERE book_id = new.book_id;
+                    INSERT INTO stats_roles(role, loans_closed, loan_days)
+                    SELECT role, 1, CAST(julianday(new.return_date) - julianday(new.loan_date) AS INTEGER)
+                    FROM users WHERE id = new.user_id
+                    ON CONFLICT(role) DO UPDATE SET
+                        loans_closed = loans_closed + 1,
+                        loan_days = loan_days + excluded.loan_days;
+                    UPDATE stats_totals SET loans_returned = loans_returned + 1 WHERE id = 1;
+                END;
+            """);
+            st.execute("""
+                CREATE TRIGGER IF NOT EXISTS stats_reservations_settled AFTER UPDATE OF status ON reservations
+                WHEN old.status = 'ACTIVE' AND new.status IN ('FULFILLED', 'EXPIRED') BEGIN
+                    INSERT INTO stats_daily(day, reservations_fulfilled, reservations_expired)
+                    SELECT day, new.status = 'FULFILLED', new.status = 'EXPIRED'
+                    FROM (SELECT CASE WHEN new.status = 'FULFILLED'
+                                      THEN (SELECT loan_date FROM loans WHERE id = new.fulfilled_loan_id)
+                                      ELSE new.expires_at END AS day)
+                    WHERE day IS NOT NULL
+                    ON CONFLICT(day) DO UPDATE SET
+                        reservations_fulfilled = reservations_fulfilled + excluded.reservations_fulfilled,
+                        reservations_expired = reservations_expired + excluded.reservations_expired;
+                    UPDATE stats_totals
+                    SET reservations_fulfilled = reservations_fulfilled + (new.status = 'FULFILLED'),
+                        reservations_expired = reservations_expired + (new.status = 'EXPIRED')
+                    WHERE id = 1;
+                END;
+            """);
+        }
+        rebuildCirculationStats(conn);
+    }
+
+    public static void rebuildCirculationStats(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate("DELETE FROM stats_daily");
+            st.executeUpdate("DELETE FROM stats_books");
+            st.executeUpdate("DELETE FROM stats_roles");
+            st.executeUpdate("""
+                INSERT INTO stats_daily(day, loans_started, loans_returned, reservations_fulfilled, reservations_expired)
+                SELECT day, SUM(started), SUM(returned), SUM(fulfilled), SUM(expired)
+                FROM (
+                    SELECT loan_date AS day, 1 AS started, 0 AS returned, 0 AS fulfilled, 0 AS expired FROM loans
+                    UNION ALL
+                    SELECT return_date, 0, 1, 0, 0 FROM loans WHERE return_date IS NOT NULL
+                    UNION ALL
+                    SELECT l.loan_date, 0, 0, 1, 0
+                    FROM reservations r JOIN loans l ON l.id = r.fulfilled_loan_id
+                    WHERE r.status = 'FULFILLED'
+                    UNION ALL
+                    SELECT expires_at, 0, 0, 0, 1 FROM reservations WHERE status = 'EXPIRED'
+                )
+                GROUP BY day
+            """);
+            st.executeUpdate("""
+                INSERT INTO stats_books(book_id, loans, loan_days, first_loan_date, open_since)
+                SELECT book_id, COUNT(*),
+                       COALESCE(SUM(CAST(julianday(return_date) - julianday(loan_date) AS INTEGER)), 0),
+                       MIN(loan_date),
+                       MAX(CASE WHEN return_date IS NULL THEN loan_date END)
+                FROM loans
+                GROUP BY book_id
+            """);
+            st.executeUpdate("""
+                INSERT INTO stats_roles(role, loans_closed, loan_days)
+                SELECT u.role, COUNT(*), SUM(CAST(julianday(l.return_date) - julianday(l.loan_date) AS INTEGER))
+                FROM loans l JOIN users u ON u.id = l.user_id
+                WHERE l.return_date IS NOT NULL
+                GROUP BY u.role
+            """);
+            st.executeUpdate("""
+                INSERT OR REPLACE INTO stats_totals(id, loans_started, loans_returned, reservations_fulfilled, reservations_expired)
+                SELECT 1,
+                       (SELECT COUNT(*) FROM loans),
+                       (SELECT COUNT(*) FROM loans WHERE return_date IS NOT NULL),
+                       (SELECT COUNT(*) FROM reservations WHERE status = 'FULFILLED'),
+                       (SELECT COUNT(*) FROM reservations WHERE status = 'EXPIRED')
+            """);
+        }
+    }
+
+    private static void addOverdueAccrualDates(Connection conn) throws Exception {
+        if (!columnExists(conn, "overdue_fines", "accrued_on")) {
+            try (Statement st = conn.createStatement()) {
+                st.execute("ALTER TABLE overdue_fines ADD COLUMN accrued_on TEXT;");
+            }
+        }
+        try (Statement st = conn.createStatement()) {
+            st.execute("""
+                UPDATE overdue_fines
+                SET accrued_on = date(due_date, '+' || days_overdue || ' days')
+                WHERE accrued_on IS NULL;
+            """);
+            st.execute("""
+                CREATE INDEX IF NOT EXISTS idx_overdue_fines_accrued_on
+                ON overdue_fines(accrued_on);
+            """);
+            st.execute("""
+                CREATE TRIGGER IF NOT EXISTS overdue_loans_returned AFTER UPDATE OF return_date ON loans
+                WHEN old.return_date IS NULL AND new.return_date IS NOT NULL
+                     AND EXISTS (SELECT 1 FROM overdue_fines WHERE loan_id = new.id) BEGIN
+                    UPDATE overdue_user_summary
+                    SET overdue_loans = overdue_loans - 1,
+                        accrued_cents = accrued_cents - (SELECT accrued_cents FROM overdue_fines WHERE loan_id = new.id)
+                    WHERE user_id = new.user_id;
+                    UPDATE overdue_book_summary
+                    SET overdue_loans = overdue_loans - 1,
+                        accrued_cents = accrued_cents - (SELECT accrued_cents FROM overdue_fines WHERE loan_id = new.id)
+                    WHERE book_id = new.book_id;
+                    DELETE FROM overdue_user_summary WHERE user_id = new.user_id AND overdue_loans <= 0;
+                    DELETE FROM overdue_book_summary WHERE book_id = new.book_id AND overdue_loans <= 0;
+                    DELETE FROM overdue_fines WHERE loan_id = new.id;
+                END;
+            """);
+        }
+    }
+
+    private static void ensureSearchIndex(Connection conn) throws Exception {
+        boolean existed = tableExists(conn, "books_fts");
+
+        try (Statement st = conn.createStatement()) {
+            st.execute("""
+                CREATE VIRTUAL TABLE IF NOT EXISTS books_fts USING fts5(
+                    title,
+                    author,
+                    content='books',
+                    content_rowid='id',
+                    tokenize='unicode61 remove_diacritics 2'
+                );
+            """);
+            st.execute("""
+                CREATE TRIGGER IF NOT EXISTS books_fts_ai AFTER INSERT ON books BEGIN
+                    INSERT INTO books_fts(rowid, title, author) VALUES (new.id, new.title, new.author);
+                END;
+            """);
+            st.execute("""
+                CREATE TRIGGER IF NOT EXISTS books_fts_ad AFTER DELETE ON books BEGIN
+                    INSERT INTO books_fts(books_fts, rowid, title, author) VALUES ('delete', old.id, old.title, old.author);
+                END;
+            """);
+            st.execute("""
+                CREATE TRIGGER IF NOT EXISTS books_fts_au AFTER UPDATE OF title, author ON books BEGIN
+                    INSERT INTO books_fts(books_fts, rowid, title, author) VALUES ('delete', old.id, old.title, old.author);
+                    INSERT INTO books_fts(rowid, title, author) VALUES (new.id, new.title, new.author);
+                END;
+            """);
+
+            if (!existed) {
+                st.execute("INSERT INTO books_fts(books_fts) VALUES ('rebuild');");
+            }
+        }
+    }
+
     private static boolean tableExists(Connection conn, String table) throws Exception {
         String sql = "SELECT name FROM sqlite_master WHERE type='table' AND name=? LIMIT 1";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
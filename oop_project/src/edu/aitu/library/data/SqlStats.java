@@ -0,0 +1,40 @@
+package edu.aitu.library.data;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class SqlStats {
+    private final String sql;
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder rows = new LongAdder();
+
+    SqlStats(String sql) {
+        this.sql = sql;
+    }
+
+    void record(long nanos, long rowCount) {
+        executions.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        rows.add(rowCount);
+    }
+
+    public String getSql() { return sql; }
+    public long getExecutions() { return executions.sum(); }
+    public long getTotalNanos() { return totalNanos.sum(); }
+    public long getMaxNanos() { return maxNanos.get(); }
+    public long getRows() { return rows.sum(); }
+
+    public double getMeanMicros() {
+        long n = executions.sum();
+        return n == 0 ? 0 : totalNanos.sum() / 1e3 / n;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SqlStats{executions=%d, totalMs=%.1f, meanUs=%.1f, maxUs=%.1f, rows=%d, sql=%s}",
+                getExecutions(), getTotalNanos() / 1e6, getMeanMicros(), getMaxNanos() / 1e3, getRows(), sql);
+    }
+}
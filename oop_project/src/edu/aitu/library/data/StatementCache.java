@@ -0,0 +1,83 @@
+package edu.aitu.library.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+public class StatementCache implements AutoCloseable {
+    private final Connection conn;
+    private final int capacity;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public StatementCache(Connection conn, int capacity) {
+        this.conn = conn;
+        this.capacity = capacity;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= StatementCache.this.capacity) return false;
+                evictions.increment();
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    public static StatementCache of(Connection conn) throws SQLException {
+        if (!conn.isWrapperFor(StatementCache.class)) {
+            throw new SQLException("Connection was not obtained from DB and has no statement cache.");
+        }
+        return conn.unwrap(StatementCache.class);
+    }
+
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return lookup(sql, false);
+    }
+
+    public PreparedStatement prepareReturningKeys(String sql) throws SQLException {
+        return lookup(sql, true);
+    }
+
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getEvictions() { return evictions.sum(); }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        statements.values().forEach(StatementCache::closeQuietly);
+        statements.clear();
+    }
+
+    private synchronized PreparedStatement lookup(String sql, boolean returnKeys) throws SQLException {
+        String key = returnKeys ? "K:" + sql : "S:" + sql;
+        PreparedStatement ps = statements.get(key);
+        if (ps != null && !ps.isClosed()) {
+            hits.increment();
+            ps.clearParameters();
+            return ps;
+        }
+
+        misses.increment();
+        ps = returnKeys
+                ? conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                : conn.prepareStatement(sql);
+        statements.put(key, ps);
+        return ps;
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try { ps.close(); } catch (Exception ignored) {}
+    }
+}
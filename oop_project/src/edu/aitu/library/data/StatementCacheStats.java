@@ -0,0 +1,31 @@
+package edu.aitu.library.data;
+
+public class StatementCacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int cached;
+
+    public StatementCacheStats(long hits, long misses, long evictions, int cached) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.cached = cached;
+    }
+
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public long getEvictions() { return evictions; }
+    public int getCached() { return cached; }
+
+    public double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "StatementCacheStats{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions +
+                ", cached=" + cached + ", hitRatio=" + String.format("%.3f", getHitRatio()) + "}";
+    }
+}
@@ -0,0 +1,208 @@
+package edu.aitu.library.data;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+
+final class TracingJdbc {
+    private TracingJdbc() {
+    }
+
+    static Connection wrap(Connection physical, QueryTracer tracer) {
+        return proxy(Connection.class, new ConnectionHandler(physical, tracer));
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object forward(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        private final QueryTracer tracer;
+
+        ConnectionHandler(Connection target, QueryTracer tracer) {
+            this.target = target;
+            this.tracer = tracer;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = forward(target, method, args);
+            switch (method.getName()) {
+                case "prepareStatement" -> {
+                    String sql = QueryTracer.normalize((String) args[0]);
+                    return proxy(PreparedStatement.class, new StatementHandler((Statement) result, sql, tracer));
+                }
+                case "createStatement" -> {
+                    return proxy(Statement.class, new StatementHandler((Statement) result, null, tracer));
+                }
+                default -> {
+                    return result;
+                }
+            }
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String preparedSql;
+        private final QueryTracer tracer;
+        private Object[] params = new Object[8];
+        private int paramCount;
+        private int batched;
+        private ResultSetHandler open;
+
+        StatementHandler(Statement target, String preparedSql, QueryTracer tracer) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+            this.tracer = tracer;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                bind(index, name.equals("setNull") ? null : args[1]);
+                return forward(target, method, args);
+            }
+
+            switch (name) {
+                case "clearParameters" -> {
+                    Arrays.fill(params, 0, paramCount, null);
+                    paramCount = 0;
+                    return forward(target, method, args);
+                }
+                case "addBatch" -> {
+                    batched++;
+                    return forward(target, method, args);
+                }
+                case "clearBatch" -> {
+                    batched = 0;
+                    return forward(target, method, args);
+                }
+                case "close" -> {
+                    finishOpen();
+                    return forward(target, method, args);
+                }
+                case "executeQuery" -> {
+                    finishOpen();
+                    String sql = sql(args);
+                    Object[] bound = boundParams();
+                    long start = System.nanoTime();
+                    ResultSet rs = (ResultSet) forward(target, method, args);
+                    open = new ResultSetHandler(rs, sql, bound, System.nanoTime() - start, tracer);
+                    return proxy(ResultSet.class, open);
+                }
+                case "executeUpdate", "executeLargeUpdate", "execute" -> {
+                    finishOpen();
+                    String sql = sql(args);
+                    Object[] bound = boundParams();
+                    long start = System.nanoTime();
+                    Object result = forward(target, method, args);
+                    long elapsed = System.nanoTime() - start;
+                    long rows = result instanceof Number n ? n.longValue()
+                            : Boolean.FALSE.equals(result) ? Math.max(0, target.getUpdateCount()) : 0;
+                    tracer.record(sql, elapsed, rows, bound);
+                    return result;
+                }
+                case "executeBatch", "executeLargeBatch" -> {
+                    finishOpen();
+                    int size = batched;
+                    batched = 0;
+                    long start = System.nanoTime();
+                    Object result = forward(target, method, args);
+                    long elapsed = System.nanoTime() - start;
+                    long rows = 0;
+                    if (result instanceof int[] counts) for (int c : counts) rows += Math.max(0, c);
+                    if (result instanceof long[] counts) for (long c : counts) rows += Math.max(0, c);
+                    tracer.record(sql(null), elapsed, rows, new Object[]{"batch of " + size});
+                    return result;
+                }
+                default -> {
+                    return forward(target, method, args);
+                }
+            }
+        }
+
+        private void bind(int index, Object value) {
+            if (index > params.length) params = Arrays.copyOf(params, Math.max(index, params.length * 2));
+            params[index - 1] = value;
+            paramCount = Math.max(paramCount, index);
+        }
+
+        private Object[] boundParams() {
+            return paramCount == 0 ? null : Arrays.copyOf(params, paramCount);
+        }
+
+        private String sql(Object[] args) {
+            if (args != null && args.length > 0 && args[0] instanceof String s) return QueryTracer.normalize(s);
+            return preparedSql != null ? preparedSql : "<unknown>";
+        }
+
+        private void finishOpen() {
+            if (open != null) {
+                open.finish();
+                open = null;
+            }
+        }
+    }
+
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+        private final String sql;
+        private final Object[] params;
+        private final QueryTracer tracer;
+        private long nanos;
+        private long rows;
+        private boolean finished;
+
+        ResultSetHandler(ResultSet target, String sql, Object[] params, long executeNanos, QueryTracer tracer) {
+            this.target = target;
+            this.sql = sql;
+            this.params = params;
+            this.nanos = executeNanos;
+            this.tracer = tracer;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next" -> {
+                    long start = System.nanoTime();
+                    Object result = forward(target, method, args);
+                    nanos += System.nanoTime() - start;
+                    if (Boolean.TRUE.equals(result)) rows++;
+                    return result;
+                }
+                case "close" -> {
+                    Object result = forward(target, method, args);
+                    finish();
+                    return result;
+                }
+                default -> {
+                    return forward(target, method, args);
+                }
+            }
+        }
+
+        void finish() {
+            if (finished) return;
+            finished = true;
+            tracer.record(sql, nanos, rows, params);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package edu.aitu.library.data;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+public class TransactionHooks {
+    private final List<Hook> afterCommit = new ArrayList<>();
+    private final List<Hook> onRollback = new ArrayList<>();
+    private final Map<Savepoint, int[]> savepoints = new IdentityHashMap<>();
+    private final Map<Object, Object> locals = new IdentityHashMap<>();
+
+    public static void afterCommit(Connection conn, Runnable action) throws SQLException {
+        afterCommit(conn, action, null);
+    }
+
+    public static void afterCommit(Connection conn, Runnable action, Runnable markStale) throws SQLException {
+        Hook hook = new Hook(action, markStale);
+        if (conn.getAutoCommit()) {
+            runAll(List.of(hook), "After-commit action");
+            return;
+        }
+        of(conn).afterCommit.add(hook);
+    }
+
+    public static void onRollback(Connection conn, Runnable undo) throws SQLException {
+        onRollback(conn, undo, null);
+    }
+
+    public static void onRollback(Connection conn, Runnable undo, Runnable markStale) throws SQLException {
+        if (conn.getAutoCommit()) return;
+        of(conn).onRollback.add(new Hook(undo, markStale));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> T local(Connection conn, Object key, Supplier<T> init) throws SQLException {
+        if (conn.getAutoCommit()) return null;
+        return (T) of(conn).locals.computeIfAbsent(key, k -> init.get());
+    }
+
+    public static <T> T peekLocal(Connection conn, Object key) throws SQLException {
+        if (conn.getAutoCommit() || !conn.isWrapperFor(TransactionHooks.class)) return null;
+        @SuppressWarnings("unchecked")
+        T value = (T) conn.unwrap(TransactionHooks.class).locals.get(key);
+        return value;
+    }
+
+    private static TransactionHooks of(Connection conn) throws SQLException {
+        if (!conn.isWrapperFor(TransactionHooks.class)) {
+            throw new SQLException("Connection was not obtained from DB and cannot defer work until commit.");
+        }
+        return conn.unwrap(TransactionHooks.class);
+    }
+
+    void committed() {
+        onRollback.clear();
+        savepoints.clear();
+        locals.clear();
+        if (afterCommit.isEmpty()) return;
+        List<Hook> actions = new ArrayList<>(afterCommit);
+        afterCommit.clear();
+        runAll(actions, "After-commit action");
+    }
+
+    void rolledBack() {
+        afterCommit.clear();
+        savepoints.clear();
+        locals.clear();
+        undo(0);
+    }
+
+    void savepointSet(Savepoint savepoint) {
+        savepoints.put(savepoint, new int[]{afterCommit.size(), onRollback.size()});
+    }
+
+    void savepointReleased(Savepoint savepoint) {
+        savepoints.remove(savepoint);
+    }
+
+    void rolledBackTo(Savepoint savepoint) {
+        int[] mark = savepoints.get(savepoint);
+        if (mark == null) return;
+        afterCommit.subList(Math.min(mark[0], afterCommit.size()), afterCommit.size()).clear();
+        undo(mark[1]);
+    }
+
+    private void undo(int from) {
+        if (from >= onRollback.size()) return;
+        List<Hook> undos = new ArrayList<>(onRollback.subList(from, onRollback.size()));
+        onRollback.subList(from, onRollback.size()).clear();
+        Collections.reverse(undos);
+        runAll(undos, "Rollback action");
+    }
+
+    // Every hook runs even if an earlier one fails. A failed hook marks what it maintains as stale so it is
+    // rebuilt from the database; failures that cannot be recovered that way are rethrown once all hooks ran.
+    private static void runAll(List<Hook> hooks, String what) {
+        IllegalStateException failure = null;
+        for (Hook hook : hooks) {
+            try {
+                hook.action.run();
+            } catch (RuntimeException e) {
+                try {
+                    if (hook.markStale != null) {
+                        hook.markStale.run();
+                        continue;
+                    }
+                } catch (RuntimeException staleFailure) {
+                    e.addSuppressed(staleFailure);
+                }
+                if (failure == null) failure = new IllegalStateException(what + " failed.", e);
+                else failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    private static final class Hook {
+        private final Runnable action;
+        private final Runnable markStale;
+
+        Hook(Runnable action, Runnable markStale) {
+            this.action = action;
+            this.markStale = markStale;
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package edu.aitu.library.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import edu.aitu.library.exception.*;
+import edu.aitu.library.model.*;
+import edu.aitu.library.service.LibraryService;
+import edu.aitu.library.service.VirtualThreads;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+public class LibraryHttpServer implements AutoCloseable {
+    private static final int BACKLOG = 4096;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int DEFAULT_FALLBACK_THREADS = 64;
+    private static final int STOP_DELAY_SECONDS = 1;
+    private static final System.Logger LOG = System.getLogger(LibraryHttpServer.class.getName());
+
+    private interface Endpoint {
+        Response handle(Request request) throws LibraryException;
+    }
+
+    private final LibraryService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Router> routers = new LinkedHashMap<>();
+
+    public LibraryHttpServer(LibraryService service, InetSocketAddress address) throws IOException {
+        this(service, address, DEFAULT_FALLBACK_THREADS);
+    }
+
+    public LibraryHttpServer(LibraryService service, InetSocketAddress address, int fallbackThreads) throws IOException {
+        this.service = service;
+        this.server = HttpServer.create(address, BACKLOG);
+        this.executor = VirtualThreads.newPerTaskExecutor("http-worker", fallbackThreads);
+        server.setExecutor(executor);
+
+        route("/health", "GET", request -> Response.ok(Map.of("status", "ok")));
+        route("/users", "GET", request -> Response.ok(page(service.listUsersPage(request.cursor(), request.limit()), LibraryHttpServer::user)));
+        route("/users", "POST", this::registerUser);
+        route("/books", "GET", this::listBooks);
+        route("/books", "POST", this::addBook);
+        route("/loans", "GET", request -> Response.ok(page(service.listLoansPage(request.cursor(), request.limit()), LibraryHttpServer::loan)));
+        route("/reservations", "GET", request -> Response.ok(page(service.listReservationsPage(request.cursor(), request.limit()), LibraryHttpServer::reservation)));
+        route("/reservations/position", "GET", this::reservationPosition);
+        route("/borrow", "POST", this::borrow);
+        route("/return", "POST", this::returnBooks);
+        route("/reserve", "POST", this::reserve);
+    }
+
+    public LibraryHttpServer start() {
+        server.start();
+        return this;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public boolean usesVirtualThreads() {
+        return VirtualThreads.isAvailable();
+    }
+
+    @Override
+    public void close() {
+        server.stop(STOP_DELAY_SECONDS);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) executor.shutdownNow();
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Response registerUser(Request request) throws LibraryException {
+        String name = request.stringField("name");
+        Role role = Role.fromString(request.optionalStringField("role"));
+        return Response.created(Map.of("id", service.registerUser(name, role)));
+    }
+
+    private Response listBooks(Request request) throws LibraryException {
+        String query = request.param("q");
+        if (query != null) {
+            List<Map<String, Object>> items = new ArrayList<>();
+            for (Book b : service.searchBooks(query, request.limit())) items.add(book(b));
+            return Response.ok(Map.of("items", items));
+        }
+        return Response.ok(page(service.listBooksPage(request.cursor(), request.limit()), LibraryHttpServer::book));
+    }
+
+    private Response addBook(Request request) throws LibraryException {
+        int id = service.addBook(request.stringField("title"), request.stringField("author"));
+        return Response.created(Map.of("id", id));
+    }
+
+    private Response reservationPosition(Request request) throws LibraryException {
+        int bookId = request.intParam("bookId");
+        if (request.param("userId") == null) return Response.ok(position(service.estimateWait(bookId)));
+        return Response.ok(position(service.getReservationPosition(request.intParam("userId"), bookId)));
+    }
+
+    private Response borrow(Request request) throws LibraryException {
+        int userId = request.intField("userId");
+        if (request.has("bookIds")) {
+            return Response.ok(Map.of("results", results(service.borrowBooks(userId, request.intListField("bookIds")))));
+        }
+        return Response.created(Map.of("loanId", service.borrowBook(userId, request.intField("bookId"))));
+    }
+
+    private Response returnBooks(Request request) throws LibraryException {
+        if (request.has("bookIds")) {
+            return Response.ok(Map.of("results", results(service.returnBooks(request.intListField("bookIds")))));
+        }
+        int bookId = request.intField("bookId");
+        service.returnBook(bookId);
+        return Response.ok(Map.of("bookId", bookId, "returned", true));
+    }
+
+    private Response reserve(Request request) throws LibraryException {
+        int result = service.reserveBook(request.intField("userId"), request.intField("bookId"));
+        if (result < 0) return Response.created(Map.of("loanId", -result, "borrowed", true));
+        return Response.created(Map.of("reservationId", result, "borrowed", false));
+    }
+
+    private void route(String path, String method, Endpoint endpoint) {
+        Router router = routers.computeIfAbsent(path, p -> {
+            Router r = new Router(p);
+            server.createContext(p, r::handle);
+            return r;
+        });
+        router.endpoints.put(method, endpoint);
+    }
+
+    private static final class Router {
+        private final String path;
+        private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+
+        Router(String path) {
+            this.path = path;
+        }
+
+        void handle(HttpExchange exchange) throws IOException {
+            try {
+                send(exchange, respond(exchange));
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private Response respond(HttpExchange exchange) {
+            try {
+                if (!exchange.getRequestURI().getPath().equals(path)) {
+                    return Response.error(404, "NotFound", "No such resource: " + exchange.getRequestURI().getPath());
+                }
+                Endpoint endpoint = endpoints.get(exchange.getRequestMethod());
+                if (endpoint == null) {
+                    exchange.getResponseHeaders().set("Allow", String.join(", ", endpoints.keySet()));
+                    return Response.error(405, "MethodNotAllowed", exchange.getRequestMethod() + " is not supported on " + path);
+                }
+                return endpoint.handle(Request.read(exchange));
+            } catch (LibraryException e) {
+                return Response.error(statusFor(e), e.getClass().getSimpleName(), e.getMessage());
+            } catch (IOException e) {
+                return Response.error(400, "BadRequest", "Could not read request body: " + e.getMessage());
+            } catch (IllegalArgumentException e) {
+                return Response.error(400, "BadRequest", e.getMessage());
+            } catch (RuntimeException e) {
+                LOG.log(System.Logger.Level.ERROR, "Unhandled error on " + exchange.getRequestMethod() + " " + path, e);
+                return Response.error(500, "InternalError", "The request could not be completed.");
+            }
+        }
+    }
+
+    private static int statusFor(LibraryException e) {
+        if (e instanceof NotFoundException) return 404;
+        if (e instanceof BookUnavailableException
+                || e instanceof BorrowLimitExceededException
+                || e instanceof ReservationExistsException
+                || e instanceof ReservationNotAllowedException) return 409;
+        return 500;
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        byte[] body = Json.write(response.body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static <T> Map<String, Object> page(Page<T> page, Function<T, Map<String, Object>> mapper) {
+        List<Map<String, Object>> items = new ArrayList<>(page.getItems().size());
+        for (T item : page.getItems()) items.add(mapper.apply(item));
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("items", items);
+        json.put("nextCursor", page.getNextCursor());
+        return json;
+    }
+
+    private static List<Map<String, Object>> results(List<BatchItemResult> results) {
+        List<Map<String, Object>> json = new ArrayList<>(results.size());
+        for (BatchItemResult r : results) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("bookId", r.getBookId());
+            if (r.isSuccess()) {
+                item.put("loanId", r.getLoanId());
+            } else {
+                item.put("error", r.getError().getClass().getSimpleName());
+                item.put("message", r.getError().getMessage());
+            }
+            json.add(item);
+        }
+        return json;
+    }
+
+    private static Map<String, Object> user(User u) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", u.getId());
+        json.put("name", u.getName());
+        json.put("role", u.getRole());
+        json.put("borrowLimit", u.getBorrowLimit());
+        json.put("loanPeriodDays", u.getLoanPeriodDays());
+        return json;
+    }
+
+    private static Map<String, Object> book(Book b) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", b.getId());
+        json.put("title", b.getTitle());
+        json.put("author", b.getAuthor());
+        json.put("available", b.isAvailable());
+        return json;
+    }
+
+    private static Map<String, Object> loan(Loan l) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", l.getId());
+        json.put("userId", l.getUserId());
+        json.put("bookId", l.getBookId());
+        json.put("loanDate", l.getLoanDate());
+        json.put("dueDate", l.getDueDate());
+        json.put("returnDate", l.getReturnDate());
+        json.put("fineCents", l.getFineCents());
+        return json;
+    }
+
+    private static Map<String, Object> reservation(Reservation r) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", r.getId());
+        json.put("userId", r.getUserId());
+        json.put("bookId", r.getBookId());
+        json.put("status", r.getStatus());
+        json.put("createdAt", r.getCreatedAt());
+        json.put("expiresAt", r.getExpiresAt());
+        json.put("fulfilledLoanId", r.getFulfilledLoanId());
+        return json;
+    }
+
+    private static Map<String, Object> position(ReservationPosition p) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("bookId", p.getBookId());
+        if (p.getReservationId() != 0) {
+            json.put("userId", p.getUserId());
+            json.put("reservationId", p.getReservationId());
+        }
+        json.put("position", p.getPosition());
+        json.put("queueLength", p.getQueueLength());
+        json.put("estimatedAvailableOn", p.getEstimatedAvailableOn());
+        json.put("estimatedWaitDays", p.getEstimatedWaitDays());
+        return json;
+    }
+
+    private static final class Response {
+        private final int status;
+        private final Object body;
+
+        private Response(int status, Object body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        static Response ok(Object body) {
+            return new Response(200, body);
+        }
+
+        static Response created(Object body) {
+            return new Response(201, body);
+        }
+
+        static Response error(int status, String error, String message) {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("error", error);
+            body.put("message", message);
+            return new Response(status, body);
+        }
+    }
+
+    private static final class Request {
+        private final Map<String, String> params;
+        private final Map<String, Object> body;
+
+        private Request(Map<String, String> params, Map<String, Object> body) {
+            this.params = params;
+            this.body = body;
+        }
+
+        static Request read(HttpExchange exchange) throws IOException {
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            Map<String, Object> body = Map.of();
+            if (!exchange.getRequestMethod().equals("GET")) body = Json.parseObject(readBody(exchange.getRequestBody()));
+            return new Request(params, body);
+        }
+
+        String param(String name) {
+            return params.get(name);
+        }
+
+        String cursor() {
+            return params.get("cursor");
+        }
+
+        int limit() {
+            String limit = params.get("limit");
+            if (limit == null) return DEFAULT_PAGE_SIZE;
+            try {
+                return Integer.parseInt(limit);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("limit must be an integer: " + limit);
+            }
+        }
+
+        int intParam(String name) {
+            String value = params.get(name);
+            if (value == null) throw new IllegalArgumentException("Missing query parameter: " + name);
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(name + " must be an integer: " + value);
+            }
+        }
+
+        boolean has(String field) {
+            return body.get(field) != null;
+        }
+
+        String stringField(String field) {
+            String value = optionalStringField(field);
+            if (value == null || value.isBlank()) throw new IllegalArgumentException("Missing field: " + field);
+            return value;
+        }
+
+        String optionalStringField(String field) {
+            Object value = body.get(field);
+            return value == null ? null : value.toString();
+        }
+
+        int intField(String field) {
+            return toInt(field, body.get(field));
+        }
+
+        List<Integer> intListField(String field) {
+            if (!(body.get(field) instanceof List<?> values)) throw new IllegalArgumentException(field + " must be an array.");
+            List<Integer> ints = new ArrayList<>(values.size());
+            for (Object value : values) ints.add(toInt(field, value));
+            return ints;
+        }
+
+        private static int toInt(String field, Object value) {
+            if (value == null) throw new IllegalArgumentException("Missing field: " + field);
+            if (value instanceof Long l && l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) return l.intValue();
+            if (value instanceof String s) {
+                try {
+                    return Integer.parseInt(s.trim());
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            throw new IllegalArgumentException(field + " must be an integer.");
+        }
+
+        private static String readBody(InputStream in) throws IOException {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) throw new IllegalArgumentException("Request body exceeds " + MAX_BODY_BYTES + " bytes.");
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private static Map<String, String> parseQuery(String rawQuery) {
+            Map<String, String> params = new LinkedHashMap<>();
+            if (rawQuery == null || rawQuery.isEmpty()) return params;
+            for (String pair : rawQuery.split("&")) {
+                if (pair.isEmpty()) continue;
+                int eq = pair.indexOf('=');
+                String key = eq < 0 ? pair : pair.substring(0, eq);
+                String value = eq < 0 ? "" : pair.substring(eq + 1);
+                params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+            }
+            return params;
+        }
+    }
+}
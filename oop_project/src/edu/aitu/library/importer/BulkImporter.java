@@ -0,0 +1,175 @@
+package edu.aitu.library.importer;
+
+import edu.aitu.library.data.DB;
+import edu.aitu.library.exception.LibraryException;
+import edu.aitu.library.model.IdRange;
+import edu.aitu.library.model.Role;
+import edu.aitu.library.repository.BookRepository;
+import edu.aitu.library.repository.UserRepository;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BulkImporter {
+    public static final int DEFAULT_CHUNK_SIZE = 5_000;
+
+    private final DB db;
+    private final int chunkSize;
+
+    public BulkImporter(DB db) {
+        this(db, DEFAULT_CHUNK_SIZE);
+    }
+
+    public BulkImporter(DB db, int chunkSize) {
+        if (chunkSize < 1) throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        this.db = db;
+        this.chunkSize = chunkSize;
+    }
+
+    public ImportResult importBooks(Reader in, char delimiter, boolean hasHeader,
+                                    ImportProgressListener listener) throws LibraryException {
+        List<String> titles = new ArrayList<>(chunkSize);
+        List<String> authors = new ArrayList<>(chunkSize);
+
+        return run(in, delimiter, hasHeader, listener, new Chunk() {
+            @Override
+            public boolean accept(String[] row) {
+                if (row.length < 2) return false;
+                String title = row[0].trim();
+                String author = row[1].trim();
+                if (title.isEmpty() || author.isEmpty()) return false;
+                titles.add(title);
+                authors.add(author);
+                return true;
+            }
+
+            @Override
+            public int size() { return titles.size(); }
+
+            @Override
+            public IdRange write(Connection conn) throws SQLException {
+                return new BookRepository(conn).addBooks(titles, authors);
+            }
+
+            @Override
+            public void clear() {
+                titles.clear();
+                authors.clear();
+            }
+        }, "books");
+    }
+
+    public ImportResult importUsers(Reader in, char delimiter, boolean hasHeader,
+                                    ImportProgressListener listener) throws LibraryException {
+        List<String> names = new ArrayList<>(chunkSize);
+        List<Role> roles = new ArrayList<>(chunkSize);
+
+        return run(in, delimiter, hasHeader, listener, new Chunk() {
+            @Override
+            public boolean accept(String[] row) {
+                String name = row[0].trim();
+                if (name.isEmpty()) return false;
+                Role role;
+                try {
+                    role = Role.fromString(row.length > 1 && !row[1].isBlank() ? row[1] : null);
+                } catch (IllegalArgumentException e) {
+                    return false;
+                }
+                names.add(name);
+                roles.add(role);
+                return true;
+            }
+
+            @Override
+            public int size() { return names.size(); }
+
+            @Override
+            public IdRange write(Connection conn) throws SQLException {
+                return new UserRepository(conn).createUsers(names, roles);
+            }
+
+            @Override
+            public void clear() {
+                names.clear();
+                roles.clear();
+            }
+        }, "users");
+    }
+
+    private ImportResult run(Reader in, char delimiter, boolean hasHeader, ImportProgressListener listener,
+                             Chunk chunk, String what) throws LibraryException {
+        long start = System.nanoTime();
+        long imported = 0;
+        long rejected = 0;
+        List<IdRange> ranges = new ArrayList<>();
+
+        try (CsvReader reader = new CsvReader(in, delimiter)) {
+            if (hasHeader) reader.next();
+
+            String[] row;
+            while ((row = reader.next()) != null) {
+                if (!chunk.accept(row)) {
+                    rejected++;
+                    continue;
+                }
+                if (chunk.size() >= chunkSize) {
+                    imported += flush(chunk, ranges);
+                    listener.onProgress(imported, rejected, rate(imported, start));
+                }
+            }
+            if (chunk.size() > 0) {
+                imported += flush(chunk, ranges);
+                listener.onProgress(imported, rejected, rate(imported, start));
+            }
+        } catch (IOException e) {
+            throw new LibraryException("Failed to read " + what + " import file after " + imported + " rows.", e);
+        } catch (SQLException e) {
+            throw new LibraryException("DB error while importing " + what + " after " + imported + " rows.", e);
+        }
+
+        return new ImportResult(imported, rejected, ranges, System.nanoTime() - start);
+    }
+
+    private int flush(Chunk chunk, List<IdRange> ranges) throws SQLException {
+        int n = chunk.size();
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                IdRange range = chunk.write(conn);
+                conn.commit();
+                addRange(ranges, range);
+            } catch (SQLException e) {
+                try { conn.rollback(); } catch (Exception ignored) {}
+                throw e;
+            }
+        } finally {
+            chunk.clear();
+        }
+        return n;
+    }
+
+    private static void addRange(List<IdRange> ranges, IdRange range) {
+        int lastIdx = ranges.size() - 1;
+        if (lastIdx >= 0 && ranges.get(lastIdx).isFollowedBy(range)) {
+            ranges.set(lastIdx, ranges.get(lastIdx).mergeWith(range));
+        } else {
+            ranges.add(range);
+        }
+    }
+
+    private static double rate(long rows, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed == 0 ? 0.0 : rows * 1_000_000_000.0 / elapsed;
+    }
+
+    private interface Chunk {
+        boolean accept(String[] row);
+        int size();
+        IdRange write(Connection conn) throws SQLException;
+        void clear();
+    }
+}
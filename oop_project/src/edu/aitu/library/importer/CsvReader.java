@@ -0,0 +1,73 @@
+package edu.aitu.library.importer;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CsvReader implements Closeable {
+    private final BufferedReader in;
+    private final char delimiter;
+    private long lineNumber;
+
+    public CsvReader(Reader in, char delimiter) {
+        this.in = in instanceof BufferedReader br ? br : new BufferedReader(in, 1 << 16);
+        this.delimiter = delimiter;
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    public String[] next() throws IOException {
+        int c = in.read();
+        if (c == -1) return null;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        lineNumber++;
+
+        while (true) {
+            if (quoted) {
+                if (c == -1) throw new IOException("Unterminated quoted field at line " + lineNumber + ".");
+                if (c == '"') {
+                    in.mark(1);
+                    int peek = in.read();
+                    if (peek == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        in.reset();
+                    }
+                } else {
+                    if (c == '\n') lineNumber++;
+                    field.append((char) c);
+                }
+            } else if (c == -1 || c == '\n') {
+                fields.add(field.toString());
+                return fields.toArray(new String[0]);
+            } else if (c == '\r') {
+                in.mark(1);
+                if (in.read() != '\n') in.reset();
+                fields.add(field.toString());
+                return fields.toArray(new String[0]);
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else {
+                field.append((char) c);
+            }
+            c = in.read();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
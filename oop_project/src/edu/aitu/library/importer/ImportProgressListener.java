@@ -0,0 +1,7 @@
+package edu.aitu.library.importer;
+
+public interface ImportProgressListener {
+    void onProgress(long rowsImported, long rowsRejected, double rowsPerSecond);
+
+    ImportProgressListener NONE = (rowsImported, rowsRejected, rowsPerSecond) -> {};
+}
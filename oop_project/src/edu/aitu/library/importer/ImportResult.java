@@ -0,0 +1,35 @@
+package edu.aitu.library.importer;
+
+import edu.aitu.library.model.IdRange;
+
+import java.util.List;
+
+public class ImportResult {
+    private final long rowsImported;
+    private final long rowsRejected;
+    private final List<IdRange> idRanges;
+    private final long elapsedNanos;
+
+    public ImportResult(long rowsImported, long rowsRejected, List<IdRange> idRanges, long elapsedNanos) {
+        this.rowsImported = rowsImported;
+        this.rowsRejected = rowsRejected;
+        this.idRanges = List.copyOf(idRanges);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getRowsImported() { return rowsImported; }
+    public long getRowsRejected() { return rowsRejected; }
+    public List<IdRange> getIdRanges() { return idRanges; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : rowsImported * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportResult{imported=" + rowsImported + ", rejected=" + rowsRejected +
+                ", idRanges=" + idRanges + ", seconds=" + String.format("%.2f", elapsedNanos / 1e9) +
+                ", rowsPerSec=" + String.format("%.0f", getRowsPerSecond()) + "}";
+    }
+}
@@ -0,0 +1,50 @@
+package edu.aitu.library.metrics;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class MetricsReporter implements AutoCloseable {
+    private final ServiceMetrics metrics;
+    private final PrintStream out;
+    private final Duration interval;
+    private ScheduledExecutorService scheduler;
+
+    public MetricsReporter(ServiceMetrics metrics, Duration interval) {
+        this(metrics, interval, System.out);
+    }
+
+    public MetricsReporter(ServiceMetrics metrics, Duration interval, PrintStream out) {
+        this.metrics = metrics;
+        this.out = out;
+        this.interval = interval;
+    }
+
+    public synchronized MetricsReporter start() {
+        if (scheduler != null) return this;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        long millis = interval.toMillis();
+        scheduler.scheduleAtFixedRate(this::report, millis, millis, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    public void report() {
+        out.print("[metrics " + LocalDateTime.now().withNano(0) + "] " + metrics.dump());
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package edu.aitu.library.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class OperationMetrics implements OperationMetricsMXBean {
+    private static final Outcome[] OUTCOMES = Outcome.values();
+
+    private final ServiceOperation operation;
+    private final AtomicReferenceArray<LatencyHistogram> histograms = new AtomicReferenceArray<>(OUTCOMES.length);
+
+    OperationMetrics(ServiceOperation operation) {
+        this.operation = operation;
+    }
+
+    public ServiceOperation getOperation() {
+        return operation;
+    }
+
+    void record(Outcome outcome, long nanos) {
+        histogram(outcome).record(nanos);
+    }
+
+    public LatencyHistogram histogram(Outcome outcome) {
+        LatencyHistogram h = histograms.get(outcome.ordinal());
+        if (h != null) return h;
+        histograms.compareAndSet(outcome.ordinal(), null, new LatencyHistogram());
+        return histograms.get(outcome.ordinal());
+    }
+
+    public long count(Outcome outcome) {
+        LatencyHistogram h = histograms.get(outcome.ordinal());
+        return h == null ? 0 : h.getCount();
+    }
+
+    @Override
+    public long getCount() {
+        long total = 0;
+        for (Outcome o : OUTCOMES) total += count(o);
+        return total;
+    }
+
+    @Override
+    public long getSuccessCount() {
+        return count(Outcome.SUCCESS);
+    }
+
+    @Override
+    public long getFailureCount() {
+        return getCount() - getSuccessCount();
+    }
+
+    @Override
+    public Map<String, Long> getOutcomeCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Outcome o : OUTCOMES) {
+            long n = count(o);
+            if (n > 0) counts.put(o.getLabel(), n);
+        }
+        return counts;
+    }
+
+    @Override
+    public double getMeanMicros() { return histogram(Outcome.SUCCESS).getMeanNanos() / 1e3; }
+
+    @Override
+    public double getP50Micros() { return successPercentile(50); }
+
+    @Override
+    public double getP90Micros() { return successPercentile(90); }
+
+    @Override
+    public double getP99Micros() { return successPercentile(99); }
+
+    @Override
+    public double getP999Micros() { return successPercentile(99.9); }
+
+    @Override
+    public double getMaxMicros() { return histogram(Outcome.SUCCESS).getMaxNanos() / 1e3; }
+
+    private double successPercentile(double percentile) {
+        return histogram(Outcome.SUCCESS).percentileNanos(percentile) / 1e3;
+    }
+}
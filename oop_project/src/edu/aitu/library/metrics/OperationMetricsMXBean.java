@@ -0,0 +1,16 @@
+package edu.aitu.library.metrics;
+
+import java.util.Map;
+
+public interface OperationMetricsMXBean {
+    long getCount();
+    long getSuccessCount();
+    long getFailureCount();
+    Map<String, Long> getOutcomeCounts();
+    double getMeanMicros();
+    double getP50Micros();
+    double getP90Micros();
+    double getP99Micros();
+    double getP999Micros();
+    double getMaxMicros();
+}
@@ -0,0 +1,40 @@
+package edu.aitu.library.metrics;
+
+import edu.aitu.library.exception.BookUnavailableException;
+import edu.aitu.library.exception.BorrowLimitExceededException;
+import edu.aitu.library.exception.NotFoundException;
+import edu.aitu.library.exception.ReservationExistsException;
+import edu.aitu.library.exception.ReservationNotAllowedException;
+
+import java.util.concurrent.CompletionException;
+
+public enum Outcome {
+    SUCCESS("success"),
+    NOT_FOUND("NotFoundException"),
+    BOOK_UNAVAILABLE("BookUnavailableException"),
+    BORROW_LIMIT_EXCEEDED("BorrowLimitExceededException"),
+    RESERVATION_EXISTS("ReservationExistsException"),
+    RESERVATION_NOT_ALLOWED("ReservationNotAllowedException"),
+    ERROR("error");
+
+    private final String label;
+
+    Outcome(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public static Outcome of(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) error = error.getCause();
+        if (error == null) return SUCCESS;
+        if (error instanceof NotFoundException) return NOT_FOUND;
+        if (error instanceof BookUnavailableException) return BOOK_UNAVAILABLE;
+        if (error instanceof BorrowLimitExceededException) return BORROW_LIMIT_EXCEEDED;
+        if (error instanceof ReservationExistsException) return RESERVATION_EXISTS;
+        if (error instanceof ReservationNotAllowedException) return RESERVATION_NOT_ALLOWED;
+        return ERROR;
+    }
+}
@@ -0,0 +1,123 @@
+package edu.aitu.library.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ServiceMetrics implements ServiceMetricsMXBean {
+    public static final String DEFAULT_DOMAIN = "edu.aitu.library";
+
+    private final OperationMetrics[] operations;
+    private final LongAdder rollbacks = new LongAdder();
+    private final LongAdder savepointRollbacks = new LongAdder();
+    private final LongAdder autoFulfilments = new LongAdder();
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    public ServiceMetrics() {
+        ServiceOperation[] ops = ServiceOperation.values();
+        operations = new OperationMetrics[ops.length];
+        for (ServiceOperation op : ops) operations[op.ordinal()] = new OperationMetrics(op);
+    }
+
+    public void success(ServiceOperation operation, long startNanos) {
+        operations[operation.ordinal()].record(Outcome.SUCCESS, System.nanoTime() - startNanos);
+    }
+
+    public void failure(ServiceOperation operation, long startNanos, Throwable error) {
+        operations[operation.ordinal()].record(Outcome.of(error), System.nanoTime() - startNanos);
+    }
+
+    public void rollback() {
+        rollbacks.increment();
+    }
+
+    public void savepointRollback() {
+        savepointRollbacks.increment();
+    }
+
+    public void autoFulfilled() {
+        autoFulfilments.increment();
+    }
+
+    public OperationMetrics operation(ServiceOperation operation) {
+        return operations[operation.ordinal()];
+    }
+
+    @Override
+    public long getOperations() {
+        long total = 0;
+        for (OperationMetrics m : operations) total += m.getCount();
+        return total;
+    }
+
+    @Override
+    public long getFailures() {
+        long total = 0;
+        for (OperationMetrics m : operations) total += m.getFailureCount();
+        return total;
+    }
+
+    @Override
+    public long getRollbacks() { return rollbacks.sum(); }
+
+    @Override
+    public long getSavepointRollbacks() { return savepointRollbacks.sum(); }
+
+    @Override
+    public long getAutoFulfilments() { return autoFulfilments.sum(); }
+
+    @Override
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("operations=%d failures=%d rollbacks=%d savepointRollbacks=%d autoFulfilments=%d%n",
+                getOperations(), getFailures(), getRollbacks(), getSavepointRollbacks(), getAutoFulfilments()));
+        for (OperationMetrics m : operations) {
+            for (Outcome o : Outcome.values()) {
+                long n = m.count(o);
+                if (n == 0) continue;
+                LatencyHistogram h = m.histogram(o);
+                sb.append(String.format("  %-24s %-32s n=%-9d p50=%8.1fus p99=%8.1fus p99.9=%8.1fus max=%8.1fus%n",
+                        m.getOperation().getMethodName(), o.getLabel(), n,
+                        h.percentileNanos(50) / 1e3, h.percentileNanos(99) / 1e3,
+                        h.percentileNanos(99.9) / 1e3, h.getMaxNanos() / 1e3));
+            }
+        }
+        return sb.toString();
+    }
+
+    public synchronized void registerMBeans(String domain) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        register(server, new ObjectName(domain + ":type=ServiceMetrics"), this);
+        for (OperationMetrics m : operations) {
+            register(server, new ObjectName(domain + ":type=Operation,name=" + m.getOperation().getMethodName()), m);
+        }
+    }
+
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (InstanceNotFoundException | MBeanRegistrationException ignored) {
+            }
+        }
+        registered.clear();
+    }
+
+    private void register(MBeanServer server, ObjectName name, Object bean) throws JMException {
+        try {
+            server.registerMBean(bean, name);
+        } catch (InstanceAlreadyExistsException e) {
+            server.unregisterMBean(name);
+            server.registerMBean(bean, name);
+        }
+        registered.add(name);
+    }
+}
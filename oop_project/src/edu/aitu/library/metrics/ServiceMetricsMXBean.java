@@ -0,0 +1,10 @@
+package edu.aitu.library.metrics;
+
+public interface ServiceMetricsMXBean {
+    long getOperations();
+    long getFailures();
+    long getRollbacks();
+    long getSavepointRollbacks();
+    long getAutoFulfilments();
+    String dump();
+}
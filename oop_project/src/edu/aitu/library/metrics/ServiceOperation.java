@@ -0,0 +1,39 @@
+package edu.aitu.library.metrics;
+
+public enum ServiceOperation {
+    REGISTER_USER("registerUser"),
+    ADD_BOOK("addBook"),
+    SEARCH_BOOKS("searchBooks"),
+    LIST_USERS("listUsers"),
+    LIST_BOOKS("listBooks"),
+    LIST_LOANS("listLoans"),
+    LIST_RESERVATIONS("listReservations"),
+    LIST_USERS_PAGE("listUsersPage"),
+    LIST_BOOKS_PAGE("listBooksPage"),
+    LIST_LOANS_PAGE("listLoansPage"),
+    LIST_RESERVATIONS_PAGE("listReservationsPage"),
+    RESERVE_BOOK("reserveBook"),
+    CANCEL_RESERVATION("cancelReservation"),
+    BORROW_BOOK("borrowBook"),
+    BORROW_BOOKS("borrowBooks"),
+    RETURN_BOOK("returnBook"),
+    RETURN_BOOKS("returnBooks"),
+    REPAIR_OPEN_LOAN_COUNTERS("repairOpenLoanCounters"),
+    GET_RESERVATION_QUEUE("getReservationQueue"),
+    GET_RESERVATION_POSITION("getReservationPosition"),
+    ESTIMATE_WAIT("estimateWait"),
+    REBUILD_RESERVATION_INDEX("rebuildReservationIndex"),
+    GET_STATS("getStats"),
+    GET_BOOK_STATS("getBookStats"),
+    REBUILD_STATS("rebuildStats");
+
+    private final String methodName;
+
+    ServiceOperation(String methodName) {
+        this.methodName = methodName;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+}
@@ -0,0 +1,35 @@
+package edu.aitu.library.model;
+
+import edu.aitu.library.exception.LibraryException;
+
+public class BatchItemResult {
+    private final int bookId;
+    private final int loanId;
+    private final LibraryException error;
+
+    private BatchItemResult(int bookId, int loanId, LibraryException error) {
+        this.bookId = bookId;
+        this.loanId = loanId;
+        this.error = error;
+    }
+
+    public static BatchItemResult success(int bookId, int loanId) {
+        return new BatchItemResult(bookId, loanId, null);
+    }
+
+    public static BatchItemResult failure(int bookId, LibraryException error) {
+        return new BatchItemResult(bookId, 0, error);
+    }
+
+    public int getBookId() { return bookId; }
+    public int getLoanId() { return loanId; }
+    public LibraryException getError() { return error; }
+    public boolean isSuccess() { return error == null; }
+
+    @Override
+    public String toString() {
+        return isSuccess()
+                ? "BatchItemResult{bookId=" + bookId + ", loanId=" + loanId + "}"
+                : "BatchItemResult{bookId=" + bookId + ", error=" + error.getMessage() + "}";
+    }
+}
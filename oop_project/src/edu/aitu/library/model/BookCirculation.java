@@ -0,0 +1,42 @@
+package edu.aitu.library.model;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+public class BookCirculation {
+    private final int bookId;
+    private final String title;
+    private final int loans;
+    private final long loanDays;
+    private final LocalDate firstLoanDate;
+    private final LocalDate openSince;
+    private final double utilization;
+
+    public BookCirculation(int bookId, String title, int loans, long loanDays, LocalDate firstLoanDate,
+                           LocalDate openSince, LocalDate today) {
+        this.bookId = bookId;
+        this.title = title;
+        this.loans = loans;
+        this.loanDays = loanDays;
+        this.firstLoanDate = firstLoanDate;
+        this.openSince = openSince;
+
+        long busy = loanDays + (openSince == null ? 0 : Math.max(0, ChronoUnit.DAYS.between(openSince, today)));
+        long span = Math.max(1, ChronoUnit.DAYS.between(firstLoanDate, today));
+        this.utilization = Math.min(1.0, (double) busy / span);
+    }
+
+    public int getBookId() { return bookId; }
+    public String getTitle() { return title; }
+    public int getLoans() { return loans; }
+    public long getLoanDays() { return loanDays; }
+    public LocalDate getFirstLoanDate() { return firstLoanDate; }
+    public LocalDate getOpenSince() { return openSince; }
+    public double getUtilization() { return utilization; }
+
+    @Override
+    public String toString() {
+        return "BookCirculation{bookId=" + bookId + ", title='" + title + "', loans=" + loans +
+                ", loanDays=" + loanDays + ", utilization=" + String.format("%.3f", utilization) + "}";
+    }
+}
@@ -0,0 +1,48 @@
+package edu.aitu.library.model;
+
+import java.util.List;
+import java.util.Map;
+
+public class CirculationStats {
+    private final long loansStarted;
+    private final long loansReturned;
+    private final long reservationsFulfilled;
+    private final long reservationsExpired;
+    private final List<DailyCirculation> days;
+    private final List<BookCirculation> topBooks;
+    private final Map<Role, Double> averageLoanDaysByRole;
+
+    public CirculationStats(long loansStarted, long loansReturned, long reservationsFulfilled, long reservationsExpired,
+                            List<DailyCirculation> days, List<BookCirculation> topBooks,
+                            Map<Role, Double> averageLoanDaysByRole) {
+        this.loansStarted = loansStarted;
+        this.loansReturned = loansReturned;
+        this.reservationsFulfilled = reservationsFulfilled;
+        this.reservationsExpired = reservationsExpired;
+        this.days = days;
+        this.topBooks = topBooks;
+        this.averageLoanDaysByRole = averageLoanDaysByRole;
+    }
+
+    public long getLoansStarted() { return loansStarted; }
+    public long getLoansReturned() { return loansReturned; }
+    public long getReservationsFulfilled() { return reservationsFulfilled; }
+    public long getReservationsExpired() { return reservationsExpired; }
+    public List<DailyCirculation> getDays() { return days; }
+    public List<BookCirculation> getTopBooks() { return topBooks; }
+    public Map<Role, Double> getAverageLoanDaysByRole() { return averageLoanDaysByRole; }
+
+    public double getFulfillmentRate() {
+        long settled = reservationsFulfilled + reservationsExpired;
+        return settled == 0 ? 0.0 : (double) reservationsFulfilled / settled;
+    }
+
+    @Override
+    public String toString() {
+        return "CirculationStats{loansStarted=" + loansStarted + ", loansReturned=" + loansReturned +
+                ", reservationsFulfilled=" + reservationsFulfilled + ", reservationsExpired=" + reservationsExpired +
+                ", fulfillmentRate=" + String.format("%.3f", getFulfillmentRate()) +
+                ", averageLoanDaysByRole=" + averageLoanDaysByRole + ", days=" + days.size() +
+                ", topBooks=" + topBooks + "}";
+    }
+}
@@ -0,0 +1,32 @@
+package edu.aitu.library.model;
+
+import java.time.LocalDate;
+
+public class DailyCirculation {
+    private final LocalDate day;
+    private final int loansStarted;
+    private final int loansReturned;
+    private final int reservationsFulfilled;
+    private final int reservationsExpired;
+
+    public DailyCirculation(LocalDate day, int loansStarted, int loansReturned, int reservationsFulfilled,
+                            int reservationsExpired) {
+        this.day = day;
+        this.loansStarted = loansStarted;
+        this.loansReturned = loansReturned;
+        this.reservationsFulfilled = reservationsFulfilled;
+        this.reservationsExpired = reservationsExpired;
+    }
+
+    public LocalDate getDay() { return day; }
+    public int getLoansStarted() { return loansStarted; }
+    public int getLoansReturned() { return loansReturned; }
+    public int getReservationsFulfilled() { return reservationsFulfilled; }
+    public int getReservationsExpired() { return reservationsExpired; }
+
+    @Override
+    public String toString() {
+        return "DailyCirculation{day=" + day + ", loansStarted=" + loansStarted + ", loansReturned=" + loansReturned +
+                ", reservationsFulfilled=" + reservationsFulfilled + ", reservationsExpired=" + reservationsExpired + "}";
+    }
+}
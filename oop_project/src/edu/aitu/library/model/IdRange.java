@@ -0,0 +1,28 @@
+package edu.aitu.library.model;
+
+public class IdRange {
+    private final int first;
+    private final int last;
+
+    public IdRange(int first, int last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    public int getFirst() { return first; }
+    public int getLast() { return last; }
+    public int size() { return last - first + 1; }
+
+    public boolean isFollowedBy(IdRange next) {
+        return next.first == last + 1;
+    }
+
+    public IdRange mergeWith(IdRange next) {
+        return new IdRange(first, next.last);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + first + ".." + last + "]";
+    }
+}
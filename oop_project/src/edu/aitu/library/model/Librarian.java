@@ -12,6 +12,6 @@ public class Librarian extends User {
 
     @Override
     public int getLoanPeriodDays() {
-        return 30;
+        return getRole().getLoanPeriodDays();
     }
 }
@@ -12,7 +12,7 @@ public class Member extends User {
 
     @Override
     public int getLoanPeriodDays() {
-        return 14;
+        return getRole().getLoanPeriodDays();
     }
 }
 
@@ -0,0 +1,34 @@
+package edu.aitu.library.model;
+
+import java.time.LocalDate;
+
+public class OverdueFine {
+    private final int loanId;
+    private final int userId;
+    private final int bookId;
+    private final LocalDate dueDate;
+    private final int daysOverdue;
+    private final long accruedCents;
+
+    public OverdueFine(int loanId, int userId, int bookId, LocalDate dueDate, int daysOverdue, long accruedCents) {
+        this.loanId = loanId;
+        this.userId = userId;
+        this.bookId = bookId;
+        this.dueDate = dueDate;
+        this.daysOverdue = daysOverdue;
+        this.accruedCents = accruedCents;
+    }
+
+    public int getLoanId() { return loanId; }
+    public int getUserId() { return userId; }
+    public int getBookId() { return bookId; }
+    public LocalDate getDueDate() { return dueDate; }
+    public int getDaysOverdue() { return daysOverdue; }
+    public long getAccruedCents() { return accruedCents; }
+
+    @Override
+    public String toString() {
+        return "OverdueFine{loanId=" + loanId + ", userId=" + userId + ", bookId=" + bookId +
+                ", dueDate=" + dueDate + ", daysOverdue=" + daysOverdue + ", accruedCents=" + accruedCents + "}";
+    }
+}
@@ -0,0 +1,46 @@
+package edu.aitu.library.model;
+
+import java.time.LocalDate;
+
+public class OverdueReport {
+    private final LocalDate asOf;
+    private final boolean incremental;
+    private final int maxLoanId;
+    private final int chunks;
+    private final int overdueLoans;
+    private final long accruedCents;
+    private final int users;
+    private final int books;
+    private final long millis;
+
+    public OverdueReport(LocalDate asOf, boolean incremental, int maxLoanId, int chunks, int overdueLoans,
+                         long accruedCents, int users, int books, long millis) {
+        this.asOf = asOf;
+        this.incremental = incremental;
+        this.maxLoanId = maxLoanId;
+        this.chunks = chunks;
+        this.overdueLoans = overdueLoans;
+        this.accruedCents = accruedCents;
+        this.users = users;
+        this.books = books;
+        this.millis = millis;
+    }
+
+    public LocalDate getAsOf() { return asOf; }
+    public boolean isIncremental() { return incremental; }
+    public int getMaxLoanId() { return maxLoanId; }
+    public int getChunks() { return chunks; }
+    public int getOverdueLoans() { return overdueLoans; }
+    public long getAccruedCents() { return accruedCents; }
+    public int getUsers() { return users; }
+    public int getBooks() { return books; }
+    public long getMillis() { return millis; }
+
+    @Override
+    public String toString() {
+        return "OverdueReport{asOf=" + asOf + ", mode=" + (incremental ? "INCREMENTAL" : "FULL") +
+                ", maxLoanId=" + maxLoanId + ", chunks=" + chunks + ", overdueLoans=" + overdueLoans +
+                ", accruedCents=" + accruedCents + ", users=" + users + ", books=" + books +
+                ", millis=" + millis + "}";
+    }
+}
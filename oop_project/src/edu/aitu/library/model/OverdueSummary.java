@@ -0,0 +1,22 @@
+package edu.aitu.library.model;
+
+public class OverdueSummary {
+    private final int id;
+    private final int overdueLoans;
+    private final long accruedCents;
+
+    public OverdueSummary(int id, int overdueLoans, long accruedCents) {
+        this.id = id;
+        this.overdueLoans = overdueLoans;
+        this.accruedCents = accruedCents;
+    }
+
+    public int getId() { return id; }
+    public int getOverdueLoans() { return overdueLoans; }
+    public long getAccruedCents() { return accruedCents; }
+
+    @Override
+    public String toString() {
+        return "OverdueSummary{id=" + id + ", overdueLoans=" + overdueLoans + ", accruedCents=" + accruedCents + "}";
+    }
+}
@@ -0,0 +1,37 @@
+package edu.aitu.library.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+public class Page<T> {
+    private static final String CURSOR_PREFIX = "before:";
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public Page(List<T> items, String nextCursor) {
+        this.items = List.copyOf(items);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+    public boolean hasNext() { return nextCursor != null; }
+
+    public static String encodeCursor(int beforeId) {
+        byte[] raw = (CURSOR_PREFIX + beforeId).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    public static int decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) return Integer.MAX_VALUE;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            if (!raw.startsWith(CURSOR_PREFIX)) throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+            return Integer.parseInt(raw.substring(CURSOR_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package edu.aitu.library.model;
+
+import java.time.LocalDate;
+
+public class ReservationPosition {
+    private final int bookId;
+    private final int userId;
+    private final int reservationId;
+    private final int position;
+    private final int queueLength;
+    private final LocalDate estimatedAvailableOn;
+    private final long estimatedWaitDays;
+
+    public ReservationPosition(int bookId, int userId, int reservationId, int position, int queueLength,
+                               LocalDate estimatedAvailableOn, long estimatedWaitDays) {
+        this.bookId = bookId;
+        this.userId = userId;
+        this.reservationId = reservationId;
+        this.position = position;
+        this.queueLength = queueLength;
+        this.estimatedAvailableOn = estimatedAvailableOn;
+        this.estimatedWaitDays = estimatedWaitDays;
+    }
+
+    public int getBookId() { return bookId; }
+    public int getUserId() { return userId; }
+    public int getReservationId() { return reservationId; }
+    public int getPosition() { return position; }
+    public int getQueueLength() { return queueLength; }
+    public LocalDate getEstimatedAvailableOn() { return estimatedAvailableOn; }
+    public long getEstimatedWaitDays() { return estimatedWaitDays; }
+
+    @Override
+    public String toString() {
+        return "ReservationPosition{bookId=" + bookId +
+                ", userId=" + userId +
+                ", reservationId=" + reservationId +
+                ", position=" + position +
+                ", queueLength=" + queueLength +
+                ", estimatedAvailableOn=" + estimatedAvailableOn +
+                ", estimatedWaitDays=" + estimatedWaitDays + "}";
+    }
+}
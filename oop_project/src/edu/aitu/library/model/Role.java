@@ -1,8 +1,18 @@
 package edu.aitu.library.model;
 
 public enum Role {
-    MEMBER,
-    LIBRARIAN;
+    MEMBER(14),
+    LIBRARIAN(30);
+
+    private final int loanPeriodDays;
+
+    Role(int loanPeriodDays) {
+        this.loanPeriodDays = loanPeriodDays;
+    }
+
+    public int getLoanPeriodDays() {
+        return loanPeriodDays;
+    }
 
     public static Role fromString(String value) {
         if (value == null) return MEMBER;
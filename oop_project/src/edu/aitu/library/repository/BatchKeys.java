@@ -0,0 +1,23 @@
+package edu.aitu.library.repository;
+
+import edu.aitu.library.model.IdRange;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+final class BatchKeys {
+    private BatchKeys() {}
+
+    // Rows inserted by one batch on the single write connection get consecutive rowids,
+    // so the range ends at last_insert_rowid().
+    static IdRange lastInsertedRange(Connection conn, int count) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT last_insert_rowid()")) {
+            if (!rs.next()) throw new SQLException("Failed to read generated ids of batch.");
+            int last = rs.getInt(1);
+            return new IdRange(last - count + 1, last);
+        }
+    }
+}
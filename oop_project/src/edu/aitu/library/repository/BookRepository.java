@@ -1,45 +1,96 @@
 package edu.aitu.library.repository;
 
+import edu.aitu.library.cache.EntityCache;
+import edu.aitu.library.data.StatementCache;
+import edu.aitu.library.data.TransactionHooks;
 import edu.aitu.library.model.Book;
+import edu.aitu.library.model.IdRange;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 public class BookRepository {
+    static final String FIND_BY_ID_SQL = "SELECT id, title, author, available FROM books WHERE id = ?";
+    static final String FIND_PAGE_SQL = "SELECT id, title, author, available FROM books WHERE id < ? ORDER BY id DESC LIMIT ?";
+    static final String SET_AVAILABILITY_SQL = "UPDATE books SET available = ? WHERE id = ?";
+    static final String CLAIM_FOR_BORROW_SQL = """
+        UPDATE books SET available = 0
+        WHERE id = ?
+          AND available = 1
+          AND NOT EXISTS (SELECT 1 FROM loans WHERE book_id = books.id AND return_date IS NULL)
+          AND (SELECT open_loans FROM users WHERE id = ?) < ?
+    """;
+    static final String SEARCH_SQL = """
+        SELECT b.id, b.title, b.author, b.available
+        FROM (
+            SELECT rowid AS id, bm25(books_fts, 10.0, 5.0) AS score
+            FROM books_fts
+            WHERE books_fts MATCH ?
+            ORDER BY score
+            LIMIT ?
+        ) f
+        JOIN books b ON b.id = f.id
+        ORDER BY f.score, b.id
+    """;
+
     private final Connection conn;
+    private final EntityCache<Integer, Book> cache;
 
     public BookRepository(Connection conn) {
+        this(conn, null);
+    }
+
+    public BookRepository(Connection conn, EntityCache<Integer, Book> cache) {
         this.conn = conn;
+        this.cache = cache;
     }
 
     public int addBook(String title, String author) throws SQLException {
         String sql = "INSERT INTO books(title, author, available) VALUES(?, ?, 1)";
-        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, title);
-            ps.setString(2, author);
-            ps.executeUpdate();
-            try (ResultSet rs = ps.getGeneratedKeys()) {
-                if (rs.next()) return rs.getInt(1);
-            }
+        PreparedStatement ps = StatementCache.of(conn).prepareReturningKeys(sql);
+        ps.setString(1, title);
+        ps.setString(2, author);
+        ps.executeUpdate();
+        try (ResultSet rs = ps.getGeneratedKeys()) {
+            if (rs.next()) return rs.getInt(1);
         }
         throw new SQLException("Failed to add book.");
     }
 
-    public Book findById(int id) throws SQLException {
-        String sql = "SELECT id, title, author, available FROM books WHERE id = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, id);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) return null;
-                return new Book(
-                        rs.getInt("id"),
-                        rs.getString("title"),
-                        rs.getString("author"),
-                        rs.getInt("available") == 1
-                );
+    public IdRange addBooks(List<String> titles, List<String> authors) throws SQLException {
+        String sql = "INSERT INTO books(title, author, available) VALUES(?, ?, 1)";
+        PreparedStatement ps = StatementCache.of(conn).prepare(sql);
+        try {
+            for (int i = 0; i < titles.size(); i++) {
+                ps.setString(1, titles.get(i));
+                ps.setString(2, authors.get(i));
+                ps.addBatch();
             }
+            ps.executeBatch();
+        } finally {
+            ps.clearBatch();
+        }
+        return BatchKeys.lastInsertedRange(conn, titles.size());
+    }
+
+    public Book findById(int id) throws SQLException {
+        if (cache != null) {
+            Book cached = cache.get(id);
+            if (cached != null) return cached;
+        }
+        long generation = cache == null ? 0 : cache.generation();
+
+        PreparedStatement ps = StatementCache.of(conn).prepare(FIND_BY_ID_SQL);
+        ps.setInt(1, id);
+        Book book;
+        try (ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) return null;
+            book = map(rs);
         }
+        if (cache != null) TransactionHooks.afterCommit(conn, () -> cache.putIfCurrent(id, book, generation), cache::invalidateAll);
+        return book;
     }
 
     public List<Book> findAll() throws SQLException {
@@ -47,24 +98,81 @@ public class BookRepository {
         List<Book> books = new ArrayList<>();
         try (PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                books.add(new Book(
-                        rs.getInt("id"),
-                        rs.getString("title"),
-                        rs.getString("author"),
-                        rs.getInt("available") == 1
-                ));
-            }
+            while (rs.next()) books.add(map(rs));
+        }
+        return books;
+    }
+
+    public Stream<Book> streamAll(int fetchSize) throws SQLException {
+        String sql = "SELECT id, title, author, available FROM books ORDER BY id";
+        PreparedStatement ps = conn.prepareStatement(sql);
+        ps.setFetchSize(fetchSize);
+        return ResultSetStream.of(ps, this::map);
+    }
+
+    public List<Book> search(String query, int limit) throws SQLException {
+        String match = toMatchExpression(query);
+        List<Book> books = new ArrayList<>();
+        if (match.isEmpty()) return books;
+
+        PreparedStatement ps = StatementCache.of(conn).prepare(SEARCH_SQL);
+        ps.setString(1, match);
+        ps.setInt(2, limit);
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) books.add(map(rs));
+        }
+        return books;
+    }
+
+    public List<Book> findPage(int beforeId, int limit) throws SQLException {
+        List<Book> books = new ArrayList<>();
+        PreparedStatement ps = StatementCache.of(conn).prepare(FIND_PAGE_SQL);
+        ps.setInt(1, beforeId);
+        ps.setInt(2, limit);
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) books.add(map(rs));
         }
         return books;
     }
 
     public void setAvailability(int bookId, boolean available) throws SQLException {
-        String sql = "UPDATE books SET available = ? WHERE id = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, available ? 1 : 0);
-            ps.setInt(2, bookId);
-            ps.executeUpdate();
+        PreparedStatement ps = StatementCache.of(conn).prepare(SET_AVAILABILITY_SQL);
+        ps.setInt(1, available ? 1 : 0);
+        ps.setInt(2, bookId);
+        ps.executeUpdate();
+        invalidate(bookId);
+    }
+
+    public boolean claimForBorrow(int bookId, int userId, int borrowLimit) throws SQLException {
+        PreparedStatement ps = StatementCache.of(conn).prepare(CLAIM_FOR_BORROW_SQL);
+        ps.setInt(1, bookId);
+        ps.setInt(2, userId);
+        ps.setInt(3, borrowLimit);
+        boolean claimed = ps.executeUpdate() == 1;
+        if (claimed) invalidate(bookId);
+        return claimed;
+    }
+
+    private void invalidate(int bookId) throws SQLException {
+        if (cache != null) TransactionHooks.afterCommit(conn, () -> cache.invalidate(bookId), cache::invalidateAll);
+    }
+
+    private static String toMatchExpression(String query) {
+        StringBuilder match = new StringBuilder();
+        for (String token : query.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (token.isEmpty()) continue;
+            if (match.length() > 0) match.append(' ');
+            match.append('"').append(token).append("\"*");
         }
+        return match.toString();
+    }
+
+    private Book map(ResultSet rs) throws SQLException {
+        return new Book(
+                rs.getInt("id"),
+                rs.getString("title"),
+                rs.getString("author"),
+                rs.getInt("available") == 1
+        );
     }
 }
@@ -1,36 +1,69 @@
 package edu.aitu.library.repository;
 
+import edu.aitu.library.cache.DueDateIndex;
+import edu.aitu.library.data.StatementCache;
+import edu.aitu.library.data.TransactionHooks;
 import edu.aitu.library.model.Loan;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 public class LoanRepository {
+    static final String COUNT_OPEN_BY_USER_SQL = "SELECT COUNT(*) AS cnt FROM loans WHERE user_id = ? AND return_date IS NULL";
+    static final String HAS_OPEN_FOR_BOOK_SQL = "SELECT 1 FROM loans WHERE book_id = ? AND return_date IS NULL LIMIT 1";
+    static final String INCREMENT_OPEN_LOANS_SQL = "UPDATE users SET open_loans = open_loans + 1 WHERE id = ?";
+    static final String DECREMENT_OPEN_LOANS_SQL =
+            "UPDATE users SET open_loans = open_loans - 1 WHERE id = (SELECT user_id FROM loans WHERE id = ?)";
+    static final String CLOSE_LOAN_SQL = "UPDATE loans SET return_date=?, fine_cents=? WHERE id=? AND return_date IS NULL";
+    static final String FIND_OPEN_BY_BOOK_SQL = """
+        SELECT id, user_id, book_id, loan_date, due_date, return_date, fine_cents
+        FROM loans
+        WHERE book_id = ? AND return_date IS NULL
+        ORDER BY id DESC
+        LIMIT 1
+    """;
+    static final String FIND_ALL_OPEN_SQL = """
+        SELECT id, user_id, book_id, loan_date, due_date, return_date, fine_cents
+        FROM loans
+        WHERE return_date IS NULL
+        ORDER BY id
+    """;
+    static final String FIND_PAGE_SQL = """
+        SELECT id, user_id, book_id, loan_date, due_date, return_date, fine_cents
+        FROM loans
+        WHERE id < ?
+        ORDER BY id DESC
+        LIMIT ?
+    """;
+
     private final Connection conn;
+    private final DueDateIndex dueDates;
 
     public LoanRepository(Connection conn) {
+        this(conn, null);
+    }
+
+    public LoanRepository(Connection conn, DueDateIndex dueDates) {
         this.conn = conn;
+        this.dueDates = dueDates;
     }
 
     public int countOpenLoansByUser(int userId) throws SQLException {
-        String sql = "SELECT COUNT(*) AS cnt FROM loans WHERE user_id = ? AND return_date IS NULL";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, userId);
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next() ? rs.getInt("cnt") : 0;
-            }
+        PreparedStatement ps = StatementCache.of(conn).prepare(COUNT_OPEN_BY_USER_SQL);
+        ps.setInt(1, userId);
+        try (ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt("cnt") : 0;
         }
     }
 
     public boolean hasOpenLoanForBook(int bookId) throws SQLException {
-        String sql = "SELECT 1 FROM loans WHERE book_id = ? AND return_date IS NULL LIMIT 1";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, bookId);
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next();
-            }
+        PreparedStatement ps = StatementCache.of(conn).prepare(HAS_OPEN_FOR_BOOK_SQL);
+        ps.setInt(1, bookId);
+        try (ResultSet rs = ps.executeQuery()) {
+            return rs.next();
         }
     }
 
@@ -39,55 +72,90 @@ public class LoanRepository {
             INSERT INTO loans(user_id, book_id, loan_date, due_date, return_date, fine_cents)
             VALUES(?, ?, ?, ?, NULL, 0)
         """;
-        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setInt(1, userId);
-            ps.setInt(2, bookId);
-            ps.setString(3, LocalDate.now().toString());
-            ps.setString(4, dueDate.toString());
-            ps.executeUpdate();
-            try (ResultSet rs = ps.getGeneratedKeys()) {
-                if (rs.next()) return rs.getInt(1);
-            }
+        PreparedStatement ps = StatementCache.of(conn).prepareReturningKeys(sql);
+        ps.setInt(1, userId);
+        ps.setInt(2, bookId);
+        ps.setString(3, LocalDate.now().toString());
+        ps.setString(4, dueDate.toString());
+        ps.executeUpdate();
+
+        int loanId;
+        try (ResultSet rs = ps.getGeneratedKeys()) {
+            if (!rs.next()) throw new SQLException("Failed to create loan.");
+            loanId = rs.getInt(1);
         }
-        throw new SQLException("Failed to create loan.");
+
+        PreparedStatement counter = StatementCache.of(conn).prepare(INCREMENT_OPEN_LOANS_SQL);
+        counter.setInt(1, userId);
+        counter.executeUpdate();
+
+        if (dueDates != null) TransactionHooks.afterCommit(conn, () -> dueDates.put(bookId, dueDate), dueDates::clear);
+        return loanId;
     }
 
-    public void closeLoanWithFine(int loanId, int fineCents) throws SQLException {
-        String sql = "UPDATE loans SET return_date=?, fine_cents=? WHERE id=? AND return_date IS NULL";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, LocalDate.now().toString());
-            ps.setInt(2, fineCents);
-            ps.setInt(3, loanId);
-            ps.executeUpdate();
-        }
+    public void closeLoanWithFine(Loan loan, int fineCents) throws SQLException {
+        PreparedStatement ps = StatementCache.of(conn).prepare(CLOSE_LOAN_SQL);
+        ps.setString(1, LocalDate.now().toString());
+        ps.setInt(2, fineCents);
+        ps.setInt(3, loan.getId());
+        if (ps.executeUpdate() == 0) return;
+
+        PreparedStatement counter = StatementCache.of(conn).prepare(DECREMENT_OPEN_LOANS_SQL);
+        counter.setInt(1, loan.getId());
+        counter.executeUpdate();
+
+        if (dueDates != null) TransactionHooks.afterCommit(conn, () -> dueDates.remove(loan.getBookId()), dueDates::clear);
     }
 
     public Loan findOpenLoanByBook(int bookId) throws SQLException {
+        PreparedStatement ps = StatementCache.of(conn).prepare(FIND_OPEN_BY_BOOK_SQL);
+        ps.setInt(1, bookId);
+        try (ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) return null;
+            return map(rs);
+        }
+    }
+
+    public List<Loan> findAllOpen() throws SQLException {
+        List<Loan> loans = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(FIND_ALL_OPEN_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) loans.add(map(rs));
+        }
+        return loans;
+    }
+
+    public List<Loan> listAllLoans() throws SQLException {
         String sql = """
             SELECT id, user_id, book_id, loan_date, due_date, return_date, fine_cents
             FROM loans
-            WHERE book_id = ? AND return_date IS NULL
             ORDER BY id DESC
-            LIMIT 1
         """;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, bookId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) return null;
-                return map(rs);
-            }
+        List<Loan> loans = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) loans.add(map(rs));
         }
+        return loans;
     }
 
-    public List<Loan> listAllLoans() throws SQLException {
+    public Stream<Loan> streamAll(int fetchSize) throws SQLException {
         String sql = """
             SELECT id, user_id, book_id, loan_date, due_date, return_date, fine_cents
             FROM loans
             ORDER BY id DESC
         """;
+        PreparedStatement ps = conn.prepareStatement(sql);
+        ps.setFetchSize(fetchSize);
+        return ResultSetStream.of(ps, this::map);
+    }
+
+    public List<Loan> findPage(int beforeId, int limit) throws SQLException {
         List<Loan> loans = new ArrayList<>();
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
+        PreparedStatement ps = StatementCache.of(conn).prepare(FIND_PAGE_SQL);
+        ps.setInt(1, beforeId);
+        ps.setInt(2, limit);
+        try (ResultSet rs = ps.executeQuery()) {
             while (rs.next()) loans.add(map(rs));
         }
         return loans;
@@ -0,0 +1,317 @@
+package edu.aitu.library.repository;
+
+import edu.aitu.library.data.StatementCache;
+import edu.aitu.library.model.IdRange;
+import edu.aitu.library.model.OverdueFine;
+import edu.aitu.library.model.OverdueReport;
+import edu.aitu.library.model.OverdueSummary;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class OverdueRepository {
+    private static final int BATCH_SIZE = 1_000;
+
+    static final String LOAN_ID_BOUNDS_SQL = "SELECT MIN(id), MAX(id) FROM loans";
+    static final String FIND_OVERDUE_IN_RANGE_SQL = """
+        SELECT id, user_id, book_id, due_date
+        FROM loans
+        WHERE id BETWEEN ? AND ? AND return_date IS NULL AND due_date < ?
+    """;
+    static final String FIND_NEWLY_OVERDUE_SQL = """
+        SELECT id, user_id, book_id, due_date
+        FROM loans
+        WHERE return_date IS NULL AND due_date >= ? AND due_date < ?
+          AND NOT EXISTS (SELECT 1 FROM overdue_fines f WHERE f.loan_id = loans.id)
+        UNION
+        SELECT id, user_id, book_id, due_date
+        FROM loans
+        WHERE id > ? AND return_date IS NULL AND due_date < ?
+          AND NOT EXISTS (SELECT 1 FROM overdue_fines f WHERE f.loan_id = loans.id)
+    """;
+    static final String DELETE_CLOSED_SQL = """
+        DELETE FROM overdue_fines
+        WHERE NOT EXISTS (SELECT 1 FROM loans l WHERE l.id = overdue_fines.loan_id AND l.return_date IS NULL)
+    """;
+    static final String REACCRUE_USERS_SQL = """
+        INSERT INTO overdue_user_summary(user_id, overdue_loans, accrued_cents)
+        SELECT user_id, 0, SUM(CAST(julianday(?) - julianday(accrued_on) AS INTEGER)) * ?
+        FROM overdue_fines
+        WHERE accrued_on < ?
+        GROUP BY user_id
+        ON CONFLICT(user_id) DO UPDATE SET accrued_cents = accrued_cents + excluded.accrued_cents
+    """;
+    static final String REACCRUE_BOOKS_SQL = """
+        INSERT INTO overdue_book_summary(book_id, overdue_loans, accrued_cents)
+        SELECT book_id, 0, SUM(CAST(julianday(?) - julianday(accrued_on) AS INTEGER)) * ?
+        FROM overdue_fines
+        WHERE accrued_on < ?
+        GROUP BY book_id
+        ON CONFLICT(book_id) DO UPDATE SET accrued_cents = accrued_cents + excluded.accrued_cents
+    """;
+    static final String REACCRUE_SQL = """
+        UPDATE overdue_fines
+        SET days_overdue = CAST(julianday(?) - julianday(due_date) AS INTEGER),
+            accrued_cents = CAST(julianday(?) - julianday(due_date) AS INTEGER) * ?,
+            accrued_on = ?
+        WHERE accrued_on < ?
+    """;
+    static final String LAST_RUN_SQL = """
+        SELECT as_of, mode, max_loan_id, chunks, overdue_loans, accrued_cents, users, books, millis
+        FROM overdue_runs
+        ORDER BY id DESC
+        LIMIT 1
+    """;
+
+    private final Connection conn;
+
+    public OverdueRepository(Connection conn) {
+        this.conn = conn;
+    }
+
+    public IdRange loanIdBounds() throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(LOAN_ID_BOUNDS_SQL)) {
+            if (!rs.next()) return null;
+            int first = rs.getInt(1);
+            if (rs.wasNull()) return null;
+            return new IdRange(first, rs.getInt(2));
+        }
+    }
+
+    public List<OverdueFine> findOverdue(int firstLoanId, int lastLoanId, LocalDate asOf, int centsPerDay) throws SQLException {
+        List<OverdueFine> fines = new ArrayList<>();
+        PreparedStatement ps = StatementCache.of(conn).prepare(FIND_OVERDUE_IN_RANGE_SQL);
+        ps.setInt(1, firstLoanId);
+        ps.setInt(2, lastLoanId);
+        ps.setString(3, asOf.toString());
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) fines.add(mapFine(rs, asOf, centsPerDay));
+        }
+        return fines;
+    }
+
+    public void replaceAll(List<OverdueFine> fines, Collection<OverdueSummary> users,
+                           Collection<OverdueSummary> books, LocalDate asOf) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate("DELETE FROM overdue_fines");
+        }
+        insertFines(fines, asOf);
+        replaceSummaries("overdue_user_summary", "user_id", users);
+        replaceSummaries("overdue_book_summary", "book_id", books);
+    }
+
+    public void insertFines(List<OverdueFine> fines, LocalDate asOf) throws SQLException {
+        String sql = """
+            INSERT INTO overdue_fines(loan_id, user_id, book_id, due_date, days_overdue, accrued_cents, accrued_on)
+            VALUES(?, ?, ?, ?, ?, ?, ?)
+        """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int pending = 0;
+            for (OverdueFine f : fines) {
+                ps.setInt(1, f.getLoanId());
+                ps.setInt(2, f.getUserId());
+                ps.setInt(3, f.getBookId());
+                ps.setString(4, f.getDueDate().toString());
+                ps.setInt(5, f.getDaysOverdue());
+                ps.setLong(6, f.getAccruedCents());
+                ps.setString(7, asOf.toString());
+                ps.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    ps.executeBatch();
+                    pending = 0;
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    public int deleteClosed() throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            return st.executeUpdate(DELETE_CLOSED_SQL);
+        }
+    }
+
+    public int reaccrue(LocalDate asOf, int centsPerDay) throws SQLException {
+        for (String sql : List.of(REACCRUE_USERS_SQL, REACCRUE_BOOKS_SQL)) {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, asOf.toString());
+                ps.setInt(2, centsPerDay);
+                ps.setString(3, asOf.toString());
+                ps.executeUpdate();
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(REACCRUE_SQL)) {
+            ps.setString(1, asOf.toString());
+            ps.setString(2, asOf.toString());
+            ps.setInt(3, centsPerDay);
+            ps.setString(4, asOf.toString());
+            ps.setString(5, asOf.toString());
+            return ps.executeUpdate();
+        }
+    }
+
+    public List<OverdueFine> findNewlyOverdue(LocalDate since, int afterLoanId, LocalDate asOf,
+                                              int centsPerDay) throws SQLException {
+        List<OverdueFine> fines = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(FIND_NEWLY_OVERDUE_SQL)) {
+            ps.setString(1, since.toString());
+            ps.setString(2, asOf.toString());
+            ps.setInt(3, afterLoanId);
+            ps.setString(4, asOf.toString());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) fines.add(mapFine(rs, asOf, centsPerDay));
+            }
+        }
+        return fines;
+    }
+
+    public void addToSummaries(Collection<OverdueSummary> users, Collection<OverdueSummary> books) throws SQLException {
+        addToSummaries("overdue_user_summary", "user_id", users);
+        addToSummaries("overdue_book_summary", "book_id", books);
+    }
+
+    public void rebuildSummaries() throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate("DELETE FROM overdue_user_summary");
+            st.executeUpdate("""
+                INSERT INTO overdue_user_summary(user_id, overdue_loans, accrued_cents)
+                SELECT user_id, COUNT(*), SUM(accrued_cents) FROM overdue_fines GROUP BY user_id
+            """);
+            st.executeUpdate("DELETE FROM overdue_book_summary");
+            st.executeUpdate("""
+                INSERT INTO overdue_book_summary(book_id, overdue_loans, accrued_cents)
+                SELECT book_id, COUNT(*), SUM(accrued_cents) FROM overdue_fines GROUP BY book_id
+            """);
+        }
+    }
+
+    public long[] totals() throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("""
+                 SELECT (SELECT COALESCE(SUM(overdue_loans), 0) FROM overdue_user_summary),
+                        (SELECT COALESCE(SUM(accrued_cents), 0) FROM overdue_user_summary),
+                        (SELECT COUNT(*) FROM overdue_user_summary),
+                        (SELECT COUNT(*) FROM overdue_book_summary)
+             """)) {
+            rs.next();
+            return new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4)};
+        }
+    }
+
+    public void recordRun(OverdueReport report) throws SQLException {
+        String sql = """
+            INSERT INTO overdue_runs(as_of, mode, max_loan_id, chunks, overdue_loans, accrued_cents, users, books, millis)
+            VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, report.getAsOf().toString());
+            ps.setString(2, report.isIncremental() ? "INCREMENTAL" : "FULL");
+            ps.setInt(3, report.getMaxLoanId());
+            ps.setInt(4, report.getChunks());
+            ps.setInt(5, report.getOverdueLoans());
+            ps.setLong(6, report.getAccruedCents());
+            ps.setInt(7, report.getUsers());
+            ps.setInt(8, report.getBooks());
+            ps.setLong(9, report.getMillis());
+            ps.executeUpdate();
+        }
+    }
+
+    public OverdueReport findLastRun() throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(LAST_RUN_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) return null;
+            return new OverdueReport(LocalDate.parse(rs.getString("as_of")), "INCREMENTAL".equals(rs.getString("mode")),
+                    rs.getInt("max_loan_id"), rs.getInt("chunks"), rs.getInt("overdue_loans"),
+                    rs.getLong("accrued_cents"), rs.getInt("users"), rs.getInt("books"), rs.getLong("millis"));
+        }
+    }
+
+    public List<OverdueSummary> findTopUsers(int limit) throws SQLException {
+        return findTop("SELECT user_id, overdue_loans, accrued_cents FROM overdue_user_summary " +
+                "ORDER BY accrued_cents DESC LIMIT ?", limit);
+    }
+
+    public List<OverdueSummary> findTopBooks(int limit) throws SQLException {
+        return findTop("SELECT book_id, overdue_loans, accrued_cents FROM overdue_book_summary " +
+                "ORDER BY accrued_cents DESC LIMIT ?", limit);
+    }
+
+    public OverdueSummary findUserSummary(int userId) throws SQLException {
+        String sql = "SELECT user_id, overdue_loans, accrued_cents FROM overdue_user_summary WHERE user_id = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? mapSummary(rs) : new OverdueSummary(userId, 0, 0);
+            }
+        }
+    }
+
+    private void replaceSummaries(String table, String key, Collection<OverdueSummary> rows) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate("DELETE FROM " + table);
+        }
+        String sql = "INSERT INTO " + table + "(" + key + ", overdue_loans, accrued_cents) VALUES(?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int pending = 0;
+            for (OverdueSummary s : rows) {
+                ps.setInt(1, s.getId());
+                ps.setInt(2, s.getOverdueLoans());
+                ps.setLong(3, s.getAccruedCents());
+                ps.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    ps.executeBatch();
+                    pending = 0;
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private void addToSummaries(String table, String key, Collection<OverdueSummary> rows) throws SQLException {
+        String sql = "INSERT INTO " + table + "(" + key + ", overdue_loans, accrued_cents) VALUES(?, ?, ?) " +
+                "ON CONFLICT(" + key + ") DO UPDATE SET overdue_loans = overdue_loans + excluded.overdue_loans, " +
+                "accrued_cents = accrued_cents + excluded.accrued_cents";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int pending = 0;
+            for (OverdueSummary s : rows) {
+                ps.setInt(1, s.getId());
+                ps.setInt(2, s.getOverdueLoans());
+                ps.setLong(3, s.getAccruedCents());
+                ps.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    ps.executeBatch();
+                    pending = 0;
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private List<OverdueSummary> findTop(String sql, int limit) throws SQLException {
+        List<OverdueSummary> list = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) list.add(mapSummary(rs));
+            }
+        }
+        return list;
+    }
+
+    private static OverdueFine mapFine(ResultSet rs, LocalDate asOf, int centsPerDay) throws SQLException {
+        LocalDate due = LocalDate.parse(rs.getString("due_date"));
+        int days = (int) ChronoUnit.DAYS.between(due, asOf);
+        return new OverdueFine(rs.getInt("id"), rs.getInt("user_id"), rs.getInt("book_id"),
+                due, days, (long) days * centsPerDay);
+    }
+
+    private static OverdueSummary mapSummary(ResultSet rs) throws SQLException {
+        return new OverdueSummary(rs.getInt(1), rs.getInt("overdue_loans"), rs.getLong("accrued_cents"));
+    }
+}
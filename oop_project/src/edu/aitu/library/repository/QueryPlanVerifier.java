@@ -0,0 +1,112 @@
+package edu.aitu.library.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class QueryPlanVerifier {
+
+    public enum Mode {
+        OFF,
+        WARN,
+        FAIL;
+
+        public static Mode fromString(String value) {
+            if (value == null || value.isBlank()) return WARN;
+            return Mode.valueOf(value.trim().toUpperCase());
+        }
+    }
+
+    private QueryPlanVerifier() {}
+
+    static Map<String, String> checkedQueries() {
+        Map<String, String> q = new LinkedHashMap<>();
+        q.put("BookRepository.findById", BookRepository.FIND_BY_ID_SQL);
+        q.put("BookRepository.findPage", BookRepository.FIND_PAGE_SQL);
+        q.put("BookRepository.setAvailability", BookRepository.SET_AVAILABILITY_SQL);
+        q.put("BookRepository.search", BookRepository.SEARCH_SQL);
+        q.put("BookRepository.claimForBorrow", BookRepository.CLAIM_FOR_BORROW_SQL);
+        q.put("UserRepository.findById", UserRepository.FIND_BY_ID_SQL);
+        q.put("UserRepository.findPage", UserRepository.FIND_PAGE_SQL);
+        q.put("UserRepository.findOpenLoanCount", UserRepository.OPEN_LOANS_SQL);
+        q.put("LoanRepository.countOpenLoansByUser", LoanRepository.COUNT_OPEN_BY_USER_SQL);
+        q.put("LoanRepository.hasOpenLoanForBook", LoanRepository.HAS_OPEN_FOR_BOOK_SQL);
+        q.put("LoanRepository.closeLoanWithFine", LoanRepository.CLOSE_LOAN_SQL);
+        q.put("LoanRepository.createLoan (counter)", LoanRepository.INCREMENT_OPEN_LOANS_SQL);
+        q.put("LoanRepository.closeLoanWithFine (counter)", LoanRepository.DECREMENT_OPEN_LOANS_SQL);
+        q.put("LoanRepository.findOpenLoanByBook", LoanRepository.FIND_OPEN_BY_BOOK_SQL);
+        q.put("LoanRepository.findPage", LoanRepository.FIND_PAGE_SQL);
+        q.put("ReservationRepository.hasActiveReservation", ReservationRepository.HAS_ACTIVE_SQL);
+        q.put("ReservationRepository.findOldestActiveReservationForBook", ReservationRepository.FIND_OLDEST_ACTIVE_SQL);
+        q.put("ReservationRepository.cancelReservation", ReservationRepository.CANCEL_SQL);
+        q.put("ReservationRepository.fulfillReservation", ReservationRepository.FULFILL_SQL);
+        q.put("ReservationRepository.fulfillOldestForUser", ReservationRepository.FULFILL_OLDEST_FOR_USER_SQL);
+        q.put("ReservationRepository.expireOldReservations", ReservationRepository.EXPIRE_SQL);
+        q.put("ReservationRepository.findPage", ReservationRepository.FIND_PAGE_SQL);
+        q.put("StatsRepository.findDays", StatsRepository.FIND_DAYS_SQL);
+        q.put("StatsRepository.findBook", StatsRepository.FIND_BOOK_SQL);
+        q.put("OverdueRepository.findOverdue", OverdueRepository.FIND_OVERDUE_IN_RANGE_SQL);
+        q.put("OverdueRepository.findNewlyOverdue", OverdueRepository.FIND_NEWLY_OVERDUE_SQL);
+        q.put("OverdueRepository.reaccrue (users)", OverdueRepository.REACCRUE_USERS_SQL);
+        q.put("OverdueRepository.reaccrue (books)", OverdueRepository.REACCRUE_BOOKS_SQL);
+        q.put("OverdueRepository.reaccrue", OverdueRepository.REACCRUE_SQL);
+        return q;
+    }
+
+    public static List<String> findFullScans(Connection conn) throws SQLException {
+        List<String> problems = new ArrayList<>();
+        for (Map.Entry<String, String> e : checkedQueries().entrySet()) {
+            List<String> plan = explain(conn, e.getValue());
+            Set<String> subqueries = new HashSet<>();
+            for (String detail : plan) {
+                if (detail.startsWith("CO-ROUTINE ") || detail.startsWith("MATERIALIZE ")) {
+                    subqueries.add(detail.substring(detail.indexOf(' ') + 1).trim());
+                }
+            }
+            for (String detail : plan) {
+                if (isFullScan(detail, subqueries)) problems.add(e.getKey() + ": " + detail);
+            }
+        }
+        return problems;
+    }
+
+    public static void check(Connection conn, Mode mode) throws SQLException {
+        if (mode == Mode.OFF) return;
+
+        List<String> problems = findFullScans(conn);
+        if (problems.isEmpty()) return;
+
+        if (mode == Mode.FAIL) {
+            throw new SQLException("Repository queries do full table scans: " + String.join("; ", problems));
+        }
+        for (String p : problems) {
+            System.out.println("WARNING: full table scan in " + p);
+        }
+    }
+
+    private static List<String> explain(Connection conn, String sql) throws SQLException {
+        List<String> details = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            int params = ps.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= params; i++) ps.setNull(i, Types.NULL);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) details.add(rs.getString("detail"));
+            }
+        }
+        return details;
+    }
+
+    private static boolean isFullScan(String detail, Set<String> subqueries) {
+        if (!detail.startsWith("SCAN ")) return false;
+        if (detail.contains("VIRTUAL TABLE")) return false;
+        return !subqueries.contains(detail.substring("SCAN ".length()).trim());
+    }
+}
@@ -1,101 +1,168 @@
 package edu.aitu.library.repository;
 
+import edu.aitu.library.cache.ReservationIndex;
+import edu.aitu.library.data.StatementCache;
+import edu.aitu.library.data.TransactionHooks;
 import edu.aitu.library.model.Reservation;
 import edu.aitu.library.model.ReservationStatus;
+import edu.aitu.library.model.Role;
+import edu.aitu.library.model.User;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 public class ReservationRepository {
+    static final String HAS_ACTIVE_SQL = """
+        SELECT 1 FROM reservations
+        WHERE user_id=? AND book_id=? AND status='ACTIVE'
+        LIMIT 1
+    """;
+    static final String FIND_OLDEST_ACTIVE_SQL = """
+        SELECT id,user_id,book_id,status,created_at,expires_at,fulfilled_loan_id
+        FROM reservations
+        WHERE book_id=? AND status='ACTIVE'
+        ORDER BY id ASC
+        LIMIT 1
+    """;
+    static final String CANCEL_SQL = "UPDATE reservations SET status='CANCELLED' WHERE id=? AND status='ACTIVE'";
+    static final String FULFILL_SQL = """
+        UPDATE reservations
+        SET status='FULFILLED', fulfilled_loan_id=?
+        WHERE id=? AND status='ACTIVE'
+    """;
+    static final String FULFILL_OLDEST_FOR_USER_SQL = """
+        UPDATE reservations
+        SET status='FULFILLED', fulfilled_loan_id=?
+        WHERE id = (SELECT id FROM reservations
+                    WHERE book_id=? AND user_id=? AND status='ACTIVE'
+                    ORDER BY id LIMIT 1)
+    """;
+    static final String EXPIRE_SQL = """
+        UPDATE reservations
+        SET status='EXPIRED'
+        WHERE status='ACTIVE' AND expires_at < ?
+    """;
+    static final String FIND_ALL_ACTIVE_SQL = """
+        SELECT r.id,r.user_id,r.book_id,r.status,r.created_at,r.expires_at,r.fulfilled_loan_id,u.role
+        FROM reservations r
+        JOIN users u ON u.id = r.user_id
+        WHERE r.status='ACTIVE'
+        ORDER BY r.book_id, r.id
+    """;
+    static final String FIND_PAGE_SQL = """
+        SELECT id,user_id,book_id,status,created_at,expires_at,fulfilled_loan_id
+        FROM reservations
+        WHERE id < ?
+        ORDER BY id DESC
+        LIMIT ?
+    """;
+
     private final Connection conn;
+    private final ReservationIndex index;
 
     public ReservationRepository(Connection conn) {
+        this(conn, null);
+    }
+
+    public ReservationRepository(Connection conn, ReservationIndex index) {
         this.conn = conn;
+        this.index = index;
     }
 
     public boolean hasActiveReservation(int userId, int bookId) throws SQLException {
-        String sql = """
-            SELECT 1 FROM reservations
-            WHERE user_id=? AND book_id=? AND status='ACTIVE'
-            LIMIT 1
-        """;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, userId);
-            ps.setInt(2, bookId);
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next();
-            }
+        if (indexed()) return index.hasActive(userId, bookId, pending());
+        PreparedStatement ps = StatementCache.of(conn).prepare(HAS_ACTIVE_SQL);
+        ps.setInt(1, userId);
+        ps.setInt(2, bookId);
+        try (ResultSet rs = ps.executeQuery()) {
+            return rs.next();
         }
     }
 
     public Reservation findOldestActiveReservationForBook(int bookId) throws SQLException {
-        String sql = """
-            SELECT id,user_id,book_id,status,created_at,expires_at,fulfilled_loan_id
-            FROM reservations
-            WHERE book_id=? AND status='ACTIVE'
-            ORDER BY id ASC
-            LIMIT 1
-        """;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, bookId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) return null;
-                return map(rs);
-            }
+        if (indexed()) return index.next(bookId, pending());
+        PreparedStatement ps = StatementCache.of(conn).prepare(FIND_OLDEST_ACTIVE_SQL);
+        ps.setInt(1, bookId);
+        try (ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) return null;
+            return map(rs);
         }
     }
 
-    public int createReservation(int userId, int bookId, LocalDate expiresAt) throws SQLException {
+    public int createReservation(User user, int bookId, LocalDate expiresAt) throws SQLException {
+        int userId = user.getId();
         String sql = """
             INSERT INTO reservations(user_id, book_id, status, created_at, expires_at, fulfilled_loan_id)
             VALUES(?, ?, 'ACTIVE', ?, ?, NULL)
         """;
-        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setInt(1, userId);
-            ps.setInt(2, bookId);
-            ps.setString(3, LocalDate.now().toString());
-            ps.setString(4, expiresAt.toString());
-            ps.executeUpdate();
-            try (ResultSet rs = ps.getGeneratedKeys()) {
-                if (rs.next()) return rs.getInt(1);
+        PreparedStatement ps = StatementCache.of(conn).prepareReturningKeys(sql);
+        LocalDate createdAt = LocalDate.now();
+        ps.setInt(1, userId);
+        ps.setInt(2, bookId);
+        ps.setString(3, createdAt.toString());
+        ps.setString(4, expiresAt.toString());
+        ps.executeUpdate();
+        try (ResultSet rs = ps.getGeneratedKeys()) {
+            if (rs.next()) {
+                int id = rs.getInt(1);
+                added(new ReservationIndex.Entry(
+                        new Reservation(id, userId, bookId, ReservationStatus.ACTIVE, createdAt, expiresAt, null),
+                        user.getLoanPeriodDays()));
+                return id;
             }
         }
         throw new SQLException("Failed to create reservation.");
     }
 
-    public void cancelReservation(int reservationId) throws SQLException {
-        String sql = "UPDATE reservations SET status='CANCELLED' WHERE id=? AND status='ACTIVE'";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, reservationId);
-            ps.executeUpdate();
-        }
+    public boolean cancelReservation(int reservationId) throws SQLException {
+        PreparedStatement ps = StatementCache.of(conn).prepare(CANCEL_SQL);
+        ps.setInt(1, reservationId);
+        if (ps.executeUpdate() != 1) return false;
+        removed(reservationId);
+        return true;
     }
 
     public void fulfillReservation(int reservationId, int loanId) throws SQLException {
-        String sql = """
-            UPDATE reservations
-            SET status='FULFILLED', fulfilled_loan_id=?
-            WHERE id=? AND status='ACTIVE'
-        """;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, loanId);
-            ps.setInt(2, reservationId);
-            ps.executeUpdate();
+        PreparedStatement ps = StatementCache.of(conn).prepare(FULFILL_SQL);
+        ps.setInt(1, loanId);
+        ps.setInt(2, reservationId);
+        if (ps.executeUpdate() == 1) removed(reservationId);
+    }
+
+    public boolean fulfillOldestForUser(int bookId, int userId, int loanId) throws SQLException {
+        if (indexed()) {
+            Reservation oldest = index.oldestFor(userId, bookId, pending());
+            if (oldest == null) return false;
+            fulfillReservation(oldest.getId(), loanId);
+            return true;
         }
+        PreparedStatement ps = StatementCache.of(conn).prepare(FULFILL_OLDEST_FOR_USER_SQL);
+        ps.setInt(1, loanId);
+        ps.setInt(2, bookId);
+        ps.setInt(3, userId);
+        return ps.executeUpdate() == 1;
     }
 
     public int expireOldReservations(LocalDate today) throws SQLException {
-        String sql = """
-            UPDATE reservations
-            SET status='EXPIRED'
-            WHERE status='ACTIVE' AND expires_at < ?
-        """;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, today.toString());
-            return ps.executeUpdate();
+        PreparedStatement ps = StatementCache.of(conn).prepare(EXPIRE_SQL);
+        ps.setString(1, today.toString());
+        int expired = ps.executeUpdate();
+        if (index != null) TransactionHooks.afterCommit(conn, () -> index.removeExpiredBefore(today), index::clear);
+        return expired;
+    }
+
+    public List<ReservationIndex.Entry> findAllActive() throws SQLException {
+        List<ReservationIndex.Entry> list = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(FIND_ALL_ACTIVE_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                list.add(new ReservationIndex.Entry(map(rs), Role.fromString(rs.getString("role")).getLoanPeriodDays()));
+            }
         }
+        return list;
     }
 
     public List<Reservation> listAll() throws SQLException {
@@ -111,6 +178,55 @@ public class ReservationRepository {
         return list;
     }
 
+    public Stream<Reservation> streamAll(int fetchSize) throws SQLException {
+        String sql = """
+            SELECT id,user_id,book_id,status,created_at,expires_at,fulfilled_loan_id
+            FROM reservations ORDER BY id DESC
+        """;
+        PreparedStatement ps = conn.prepareStatement(sql);
+        ps.setFetchSize(fetchSize);
+        return ResultSetStream.of(ps, this::map);
+    }
+
+    public List<Reservation> findPage(int beforeId, int limit) throws SQLException {
+        List<Reservation> list = new ArrayList<>();
+        PreparedStatement ps = StatementCache.of(conn).prepare(FIND_PAGE_SQL);
+        ps.setInt(1, beforeId);
+        ps.setInt(2, limit);
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) list.add(map(rs));
+        }
+        return list;
+    }
+
+    private boolean indexed() {
+        return index != null && index.isLoaded();
+    }
+
+    private ReservationIndex.Pending pending() throws SQLException {
+        return TransactionHooks.peekLocal(conn, index);
+    }
+
+    private void added(ReservationIndex.Entry e) throws SQLException {
+        if (index == null) return;
+        ReservationIndex.Pending pending = TransactionHooks.local(conn, index, ReservationIndex.Pending::new);
+        if (pending != null) {
+            pending.add(e);
+            TransactionHooks.onRollback(conn, () -> pending.unadd(e));
+        }
+        TransactionHooks.afterCommit(conn, () -> index.add(e), index::clear);
+    }
+
+    private void removed(int reservationId) throws SQLException {
+        if (index == null) return;
+        ReservationIndex.Pending pending = TransactionHooks.local(conn, index, ReservationIndex.Pending::new);
+        if (pending != null) {
+            pending.remove(reservationId);
+            TransactionHooks.onRollback(conn, () -> pending.unremove(reservationId));
+        }
+        TransactionHooks.afterCommit(conn, () -> index.remove(reservationId), index::clear);
+    }
+
     private Reservation map(ResultSet rs) throws SQLException {
         int id = rs.getInt("id");
         int userId = rs.getInt("user_id");
@@ -0,0 +1,110 @@
+package edu.aitu.library.repository;
+
+import edu.aitu.library.data.SchemaInitializer;
+import edu.aitu.library.data.StatementCache;
+import edu.aitu.library.model.BookCirculation;
+import edu.aitu.library.model.DailyCirculation;
+import edu.aitu.library.model.Role;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+public class StatsRepository {
+    static final String FIND_TOTALS_SQL = """
+        SELECT loans_started, loans_returned, reservations_fulfilled, reservations_expired
+        FROM stats_totals WHERE id = 1
+    """;
+    static final String FIND_ROLES_SQL = "SELECT role, loans_closed, loan_days FROM stats_roles";
+    static final String FIND_DAYS_SQL = """
+        SELECT day, loans_started, loans_returned, reservations_fulfilled, reservations_expired
+        FROM stats_daily
+        WHERE day >= ?
+        ORDER BY day
+    """;
+    static final String FIND_TOP_BOOKS_SQL = """
+        SELECT s.book_id, b.title, s.loans, s.loan_days, s.first_loan_date, s.open_since
+        FROM stats_books s
+        JOIN books b ON b.id = s.book_id
+        ORDER BY s.loans DESC
+        LIMIT ?
+    """;
+    static final String FIND_BOOK_SQL = """
+        SELECT s.book_id, b.title, s.loans, s.loan_days, s.first_loan_date, s.open_since
+        FROM stats_books s
+        JOIN books b ON b.id = s.book_id
+        WHERE s.book_id = ?
+    """;
+
+    private final Connection conn;
+
+    public StatsRepository(Connection conn) {
+        this.conn = conn;
+    }
+
+    public void rebuild() throws SQLException {
+        SchemaInitializer.rebuildCirculationStats(conn);
+    }
+
+    public long[] findTotals() throws SQLException {
+        PreparedStatement ps = StatementCache.of(conn).prepare(FIND_TOTALS_SQL);
+        try (ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) return new long[4];
+            return new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4)};
+        }
+    }
+
+    public Map<Role, Double> findAverageLoanDays() throws SQLException {
+        Map<Role, Double> byRole = new EnumMap<>(Role.class);
+        PreparedStatement ps = StatementCache.of(conn).prepare(FIND_ROLES_SQL);
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                long closed = rs.getLong("loans_closed");
+                if (closed > 0) byRole.put(Role.fromString(rs.getString("role")), (double) rs.getLong("loan_days") / closed);
+            }
+        }
+        return byRole;
+    }
+
+    public List<DailyCirculation> findDays(LocalDate from) throws SQLException {
+        List<DailyCirculation> days = new ArrayList<>();
+        PreparedStatement ps = StatementCache.of(conn).prepare(FIND_DAYS_SQL);
+        ps.setString(1, from.toString());
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                days.add(new DailyCirculation(LocalDate.parse(rs.getString("day")), rs.getInt("loans_started"),
+                        rs.getInt("loans_returned"), rs.getInt("reservations_fulfilled"),
+                        rs.getInt("reservations_expired")));
+            }
+        }
+        return days;
+    }
+
+    public List<BookCirculation> findTopBooks(int limit, LocalDate today) throws SQLException {
+        List<BookCirculation> books = new ArrayList<>();
+        PreparedStatement ps = StatementCache.of(conn).prepare(FIND_TOP_BOOKS_SQL);
+        ps.setInt(1, limit);
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) books.add(mapBook(rs, today));
+        }
+        return books;
+    }
+
+    public BookCirculation findBook(int bookId, LocalDate today) throws SQLException {
+        PreparedStatement ps = StatementCache.of(conn).prepare(FIND_BOOK_SQL);
+        ps.setInt(1, bookId);
+        try (ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? mapBook(rs, today) : null;
+        }
+    }
+
+    private static BookCirculation mapBook(ResultSet rs, LocalDate today) throws SQLException {
+        String openSince = rs.getString("open_since");
+        return new BookCirculation(rs.getInt("book_id"), rs.getString("title"), rs.getInt("loans"),
+                rs.getLong("loan_days"), LocalDate.parse(rs.getString("first_loan_date")),
+                openSince == null ? null : LocalDate.parse(openSince), today);
+    }
+}
@@ -1,6 +1,10 @@
 package edu.aitu.library.repository;
 
+import edu.aitu.library.cache.EntityCache;
+import edu.aitu.library.data.StatementCache;
+import edu.aitu.library.data.TransactionHooks;
 import edu.aitu.library.factory.UserFactory;
+import edu.aitu.library.model.IdRange;
 import edu.aitu.library.model.Role;
 import edu.aitu.library.model.User;
 
@@ -9,34 +13,84 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class UserRepository {
+    static final String FIND_BY_ID_SQL = "SELECT id, name, role FROM users WHERE id = ?";
+    static final String OPEN_LOANS_SQL = "SELECT open_loans FROM users WHERE id = ?";
+    static final String FIND_PAGE_SQL = "SELECT id, name, role FROM users WHERE id < ? ORDER BY id DESC LIMIT ?";
+
     private final Connection conn;
+    private final EntityCache<Integer, User> cache;
 
     public UserRepository(Connection conn) {
+        this(conn, null);
+    }
+
+    public UserRepository(Connection conn, EntityCache<Integer, User> cache) {
         this.conn = conn;
+        this.cache = cache;
     }
 
     public int createUser(String name, Role role) throws SQLException {
         String sql = "INSERT INTO users(name, role) VALUES(?, ?)";
-        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, name);
-            ps.setString(2, role.name());
-            ps.executeUpdate();
-            try (ResultSet rs = ps.getGeneratedKeys()) {
-                if (rs.next()) return rs.getInt(1);
-            }
+        PreparedStatement ps = StatementCache.of(conn).prepareReturningKeys(sql);
+        ps.setString(1, name);
+        ps.setString(2, role.name());
+        ps.executeUpdate();
+        try (ResultSet rs = ps.getGeneratedKeys()) {
+            if (rs.next()) return rs.getInt(1);
         }
         throw new SQLException("Failed to create user.");
     }
 
-    public User findById(int id) throws SQLException {
-        String sql = "SELECT id, name, role FROM users WHERE id = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, id);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) return null;
-                Role role = Role.fromString(rs.getString("role"));
-                return UserFactory.create(rs.getInt("id"), rs.getString("name"), role);
+    public IdRange createUsers(List<String> names, List<Role> roles) throws SQLException {
+        String sql = "INSERT INTO users(name, role) VALUES(?, ?)";
+        PreparedStatement ps = StatementCache.of(conn).prepare(sql);
+        try {
+            for (int i = 0; i < names.size(); i++) {
+                ps.setString(1, names.get(i));
+                ps.setString(2, roles.get(i).name());
+                ps.addBatch();
             }
+            ps.executeBatch();
+        } finally {
+            ps.clearBatch();
+        }
+        return BatchKeys.lastInsertedRange(conn, names.size());
+    }
+
+    public User findById(int id) throws SQLException {
+        if (cache != null) {
+            User cached = cache.get(id);
+            if (cached != null) return cached;
+        }
+        long generation = cache == null ? 0 : cache.generation();
+
+        PreparedStatement ps = StatementCache.of(conn).prepare(FIND_BY_ID_SQL);
+        ps.setInt(1, id);
+        User user;
+        try (ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) return null;
+            user = map(rs);
+        }
+        if (cache != null) TransactionHooks.afterCommit(conn, () -> cache.putIfCurrent(id, user, generation), cache::invalidateAll);
+        return user;
+    }
+
+    public int findOpenLoanCount(int userId) throws SQLException {
+        PreparedStatement ps = StatementCache.of(conn).prepare(OPEN_LOANS_SQL);
+        ps.setInt(1, userId);
+        try (ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt("open_loans") : 0;
+        }
+    }
+
+    public int recomputeOpenLoanCounts() throws SQLException {
+        String sql = """
+            UPDATE users
+            SET open_loans = (SELECT COUNT(*) FROM loans WHERE loans.user_id = users.id AND return_date IS NULL)
+            WHERE open_loans <> (SELECT COUNT(*) FROM loans WHERE loans.user_id = users.id AND return_date IS NULL)
+        """;
+        try (Statement st = conn.createStatement()) {
+            return st.executeUpdate(sql);
         }
     }
 
@@ -45,11 +99,24 @@ public class UserRepository {
         List<User> users = new ArrayList<>();
         try (PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                Role role = Role.fromString(rs.getString("role"));
-                users.add(UserFactory.create(rs.getInt("id"), rs.getString("name"), role));
-            }
+            while (rs.next()) users.add(map(rs));
         }
         return users;
     }
+
+    public List<User> findPage(int beforeId, int limit) throws SQLException {
+        List<User> users = new ArrayList<>();
+        PreparedStatement ps = StatementCache.of(conn).prepare(FIND_PAGE_SQL);
+        ps.setInt(1, beforeId);
+        ps.setInt(2, limit);
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) users.add(map(rs));
+        }
+        return users;
+    }
+
+    private User map(ResultSet rs) throws SQLException {
+        Role role = Role.fromString(rs.getString("role"));
+        return UserFactory.create(rs.getInt("id"), rs.getString("name"), role);
+    }
 }
@@ -0,0 +1,248 @@
+package edu.aitu.library.service;
+
+import edu.aitu.library.exception.LibraryException;
+import edu.aitu.library.model.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class AsyncLibraryService implements AutoCloseable {
+    private static final int DEFAULT_MAX_CONCURRENT_READS = 64;
+    private static final int DEFAULT_WRITE_QUEUE_CAPACITY = 10_000;
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    private interface AsyncCall<T> {
+        T call() throws LibraryException;
+    }
+
+    private final LibraryService service;
+    private final Lanes lanes;
+    private final Duration timeout;
+    private final boolean owner;
+
+    public AsyncLibraryService(LibraryService service) {
+        this(service, DEFAULT_MAX_CONCURRENT_READS, DEFAULT_WRITE_QUEUE_CAPACITY, DEFAULT_TIMEOUT);
+    }
+
+    public AsyncLibraryService(LibraryService service, int maxConcurrentReads, int writeQueueCapacity, Duration timeout) {
+        this(service, new Lanes(maxConcurrentReads, writeQueueCapacity), timeout, true);
+    }
+
+    private AsyncLibraryService(LibraryService service, Lanes lanes, Duration timeout, boolean owner) {
+        if (timeout.isNegative()) throw new IllegalArgumentException("Timeout must not be negative: " + timeout);
+        this.service = service;
+        this.lanes = lanes;
+        this.timeout = timeout;
+        this.owner = owner;
+    }
+
+    public AsyncLibraryService withTimeout(Duration timeout) {
+        return new AsyncLibraryService(service, lanes, timeout, false);
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public CompletableFuture<Integer> registerUser(String name, Role role) {
+        return write(() -> CompletableFuture.completedFuture(service.registerUser(name, role)));
+    }
+
+    public CompletableFuture<Integer> addBook(String title, String author) {
+        return write(() -> CompletableFuture.completedFuture(service.addBook(title, author)));
+    }
+
+    public CompletableFuture<List<User>> listUsers() {
+        return read(service::listUsers);
+    }
+
+    public CompletableFuture<List<Book>> listBooks() {
+        return read(service::listBooks);
+    }
+
+    public CompletableFuture<List<Book>> searchBooks(String query, int limit) {
+        return read(() -> service.searchBooks(query, limit));
+    }
+
+    public CompletableFuture<List<Loan>> listLoans() {
+        return read(service::listLoans);
+    }
+
+    public CompletableFuture<List<Reservation>> listReservations() {
+        return read(service::listReservations);
+    }
+
+    public CompletableFuture<Page<User>> listUsersPage(String cursor, int limit) {
+        return read(() -> service.listUsersPage(cursor, limit));
+    }
+
+    public CompletableFuture<Page<Book>> listBooksPage(String cursor, int limit) {
+        return read(() -> service.listBooksPage(cursor, limit));
+    }
+
+    public CompletableFuture<Page<Loan>> listLoansPage(String cursor, int limit) {
+        return read(() -> service.listLoansPage(cursor, limit));
+    }
+
+    public CompletableFuture<Page<Reservation>> listReservationsPage(String cursor, int limit) {
+        return read(() -> service.listReservationsPage(cursor, limit));
+    }
+
+    public CompletableFuture<List<Reservation>> getReservationQueue(int bookId) {
+        return read(() -> service.getReservationQueue(bookId));
+    }
+
+    public CompletableFuture<ReservationPosition> getReservationPosition(int userId, int bookId) {
+        return read(() -> service.getReservationPosition(userId, bookId));
+    }
+
+    public CompletableFuture<ReservationPosition> estimateWait(int bookId) {
+        return read(() -> service.estimateWait(bookId));
+    }
+
+    public CompletableFuture<CirculationStats> getStats(int days, int topBooks) {
+        return read(() -> service.getStats(days, topBooks));
+    }
+
+    public CompletableFuture<BookCirculation> getBookStats(int bookId) {
+        return read(() -> service.getBookStats(bookId));
+    }
+
+    public CompletableFuture<Integer> borrowBook(int userId, int bookId) {
+        return write(() -> service.borrowBookAsync(userId, bookId));
+    }
+
+    public CompletableFuture<List<BatchItemResult>> borrowBooks(int userId, List<Integer> bookIds) {
+        return write(() -> CompletableFuture.completedFuture(service.borrowBooks(userId, bookIds)));
+    }
+
+    public CompletableFuture<Integer> returnBook(int bookId) {
+        return write(() -> service.returnBookAsync(bookId));
+    }
+
+    public CompletableFuture<List<BatchItemResult>> returnBooks(List<Integer> bookIds) {
+        return write(() -> CompletableFuture.completedFuture(service.returnBooks(bookIds)));
+    }
+
+    public CompletableFuture<Integer> reserveBook(int userId, int bookId) {
+        return write(() -> service.reserveBookAsync(userId, bookId));
+    }
+
+    public CompletableFuture<Integer> repairOpenLoanCounters() {
+        return write(() -> CompletableFuture.completedFuture(service.repairOpenLoanCounters()));
+    }
+
+    public CompletableFuture<Void> cancelReservation(int reservationId) {
+        return write(() -> {
+            service.cancelReservation(reservationId);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    public CompletableFuture<Integer> rebuildReservationIndex() {
+        return write(() -> CompletableFuture.completedFuture(service.rebuildReservationIndex()));
+    }
+
+    public CompletableFuture<Void> rebuildStats() {
+        return write(() -> {
+            service.rebuildStats();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    public int pendingWrites() {
+        return lanes.writer.getQueue().size();
+    }
+
+    @Override
+    public void close() {
+        if (owner) lanes.close();
+    }
+
+    private <T> CompletableFuture<T> read(AsyncCall<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = lanes.readers.submit(() -> {
+                if (result.isDone()) return;
+                try {
+                    lanes.readPermits.acquire();
+                } catch (InterruptedException e) {
+                    result.cancel(false);
+                    return;
+                }
+                try {
+                    if (!result.isDone()) result.complete(call.call());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    lanes.readPermits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return bounded(result, task);
+    }
+
+    private <T> CompletableFuture<T> write(AsyncCall<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = lanes.writer.submit(() -> {
+                if (result.isDone()) return;
+                try {
+                    call.call().whenComplete((value, error) -> {
+                        if (error == null) result.complete(value);
+                        else result.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+                    });
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return bounded(result, task);
+    }
+
+    private <T> CompletableFuture<T> bounded(CompletableFuture<T> result, Future<?> task) {
+        result.whenComplete((value, error) -> {
+            if (error != null && !task.isDone()) task.cancel(false);
+        });
+        if (timeout.isZero()) return result;
+        return result.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private static final class Lanes implements AutoCloseable {
+        private final ExecutorService readers;
+        private final Semaphore readPermits;
+        private final ThreadPoolExecutor writer;
+
+        Lanes(int maxConcurrentReads, int writeQueueCapacity) {
+            this.readers = VirtualThreads.newPerTaskExecutor("library-read", maxConcurrentReads);
+            this.readPermits = new Semaphore(maxConcurrentReads);
+            this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(writeQueueCapacity), r -> {
+                        Thread t = new Thread(r, "library-writer");
+                        t.setDaemon(true);
+                        return t;
+                    });
+        }
+
+        @Override
+        public void close() {
+            writer.shutdown();
+            readers.shutdown();
+            try {
+                if (!writer.awaitTermination(30, TimeUnit.SECONDS)) writer.shutdownNow();
+                if (!readers.awaitTermination(5, TimeUnit.SECONDS)) readers.shutdownNow();
+            } catch (InterruptedException e) {
+                writer.shutdownNow();
+                readers.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package edu.aitu.library.service;
+
+import edu.aitu.library.data.DB;
+import edu.aitu.library.exception.LibraryException;
+import edu.aitu.library.metrics.ServiceMetrics;
+
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+class GroupCommitWriter implements AutoCloseable {
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final DB db;
+    private final ServiceMetrics metrics;
+    private final int maxBatchSize;
+    private final long maxLingerNanos;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private final Object lifecycle = new Object();
+    private volatile boolean closed;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder operations = new LongAdder();
+
+    GroupCommitWriter(DB db, int maxBatchSize, Duration maxLinger, ServiceMetrics metrics) {
+        if (maxBatchSize < 1) throw new IllegalArgumentException("Group commit batch size must be at least 1.");
+        this.db = db;
+        this.metrics = metrics;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLingerNanos = Math.max(0, maxLinger.toNanos());
+        this.thread = new Thread(this::run, "group-commit-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    CompletableFuture<Integer> submit(TransactionalOperation operation, String failureMessage) {
+        Pending pending = new Pending(operation, failureMessage);
+        synchronized (lifecycle) {
+            if (!closed) {
+                queue.add(pending);
+                return pending.future;
+            }
+        }
+        pending.future.completeExceptionally(new LibraryException("Group commit writer is closed."));
+        return pending.future;
+    }
+
+    long getBatches() { return batches.sum(); }
+    long getOperations() { return operations.sum(); }
+
+    @Override
+    public void close() {
+        stopAccepting();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failQueued();
+    }
+
+    // Once closed is set under the lifecycle lock no submit can enqueue, so whatever is still queued after the
+    // writer stops is failed here rather than left for a caller to wait on forever.
+    private void stopAccepting() {
+        synchronized (lifecycle) {
+            closed = true;
+        }
+    }
+
+    private void failQueued() {
+        Pending orphan;
+        while ((orphan = queue.poll()) != null) {
+            orphan.future.completeExceptionally(new LibraryException("Group commit writer is closed."));
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Pending first;
+                try {
+                    first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                if (first == null) continue;
+
+                batch.add(first);
+                linger(batch);
+                apply(batch);
+                batch.clear();
+            }
+        } finally {
+            stopAccepting();
+            for (Pending p : batch) {
+                p.future.completeExceptionally(new LibraryException("Group commit writer stopped."));
+            }
+            failQueued();
+        }
+    }
+
+    private void linger(List<Pending> batch) {
+        long deadline = System.nanoTime() + maxLingerNanos;
+        try {
+            while (batch.size() < maxBatchSize) {
+                long remaining = deadline - System.nanoTime();
+                Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                if (next == null) return;
+                batch.add(next);
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private void apply(List<Pending> batch) {
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            for (Pending p : batch) {
+                Savepoint savepoint = conn.setSavepoint();
+                try {
+                    p.result = p.operation.apply(conn);
+                    conn.releaseSavepoint(savepoint);
+                } catch (LibraryException e) {
+                    conn.rollback(savepoint);
+                    metrics.savepointRollback();
+                    p.error = e;
+                } catch (Exception e) {
+                    conn.rollback(savepoint);
+                    metrics.savepointRollback();
+                    p.error = new LibraryException(p.failureMessage, e);
+                }
+            }
+            conn.commit();
+        } catch (Exception e) {
+            metrics.rollback();
+            for (Pending p : batch) {
+                p.future.completeExceptionally(p.error != null ? p.error : new LibraryException(p.failureMessage, e));
+            }
+            return;
+        }
+
+        batches.increment();
+        operations.add(batch.size());
+        for (Pending p : batch) {
+            if (p.error != null) p.future.completeExceptionally(p.error);
+            else p.future.complete(p.result);
+        }
+    }
+
+    private static final class Pending {
+        final TransactionalOperation operation;
+        final String failureMessage;
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+        int result;
+        LibraryException error;
+
+        Pending(TransactionalOperation operation, String failureMessage) {
+            this.operation = operation;
+            this.failureMessage = failureMessage;
+        }
+    }
+}
@@ -1,224 +1,791 @@
 package edu.aitu.library.service;
 
+import edu.aitu.library.cache.CacheStats;
+import edu.aitu.library.cache.DueDateIndex;
+import edu.aitu.library.cache.EntityCache;
+import edu.aitu.library.cache.ReservationIndex;
+import edu.aitu.library.data.DB;
+import edu.aitu.library.data.TransactionHooks;
 import edu.aitu.library.exception.*;
+import edu.aitu.library.metrics.ServiceMetrics;
+import edu.aitu.library.metrics.ServiceOperation;
 import edu.aitu.library.model.*;
 import edu.aitu.library.repository.*;
 
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
-
-public class LibraryService {
-    private final Connection conn;
-    private final UserRepository userRepo;
-    private final BookRepository bookRepo;
-    private final LoanRepository loanRepo;
-    private final ReservationRepository reservationRepo;
-
-    private static final int FINE_CENTS_PER_DAY = 200;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+public class LibraryService implements AutoCloseable {
+    private final DB db;
+    private final ReservationExpiryService expiry;
+    private final GroupCommitWriter groupCommit;
+    private final ServiceMetrics metrics = new ServiceMetrics();
+    private final EntityCache<Integer, User> userCache = new EntityCache<>(USER_CACHE_SIZE, USER_CACHE_TTL);
+    private final EntityCache<Integer, Book> bookCache = new EntityCache<>(BOOK_CACHE_SIZE, BOOK_CACHE_TTL);
+    private final ReservationIndex reservationIndex = new ReservationIndex();
+    private final DueDateIndex dueDateIndex = new DueDateIndex();
+    private final Object reservationIndexLoad = new Object();
+    private final StripedLocks bookLocks = new StripedLocks(LOCK_STRIPES);
+    private final StripedLocks userLocks = new StripedLocks(LOCK_STRIPES);
+
+    static final int FINE_CENTS_PER_DAY = 200;
     private static final int RESERVATION_EXPIRES_DAYS = 7;
+    private static final int MAX_SEARCH_RESULTS = 100;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_STATS_DAYS = 366;
+    private static final int USER_CACHE_SIZE = 10_000;
+    private static final Duration USER_CACHE_TTL = Duration.ofMinutes(30);
+    private static final int BOOK_CACHE_SIZE = 50_000;
+    private static final Duration BOOK_CACHE_TTL = Duration.ofMinutes(5);
+    private static final int LOCK_STRIPES = 256;
+
+    public LibraryService(DB db) {
+        this(db, new ReservationExpiryService(db));
+    }
 
-    public LibraryService(Connection conn) {
-        this.conn = conn;
-        this.userRepo = new UserRepository(conn);
-        this.bookRepo = new BookRepository(conn);
-        this.loanRepo = new LoanRepository(conn);
-        this.reservationRepo = new ReservationRepository(conn);
+    public LibraryService(DB db, ReservationExpiryService expiry) {
+        this.db = db;
+        this.expiry = expiry;
+        this.groupCommit = null;
+        expiry.useIndex(reservationIndex);
+    }
+
+    public LibraryService(DB db, ReservationExpiryService expiry, int groupCommitBatchSize, Duration groupCommitLinger) {
+        this.db = db;
+        this.expiry = expiry;
+        this.groupCommit = new GroupCommitWriter(db, groupCommitBatchSize, groupCommitLinger, metrics);
+        expiry.useIndex(reservationIndex);
     }
 
     public int registerUser(String name, Role role) throws LibraryException {
-        try {
-            return userRepo.createUser(name, role);
-        } catch (Exception e) {
-            throw new LibraryException("DB error while creating user.", e);
-        }
+        return timed(ServiceOperation.REGISTER_USER, () -> {
+            try (Connection conn = db.getConnection()) {
+                return new UserRepository(conn).createUser(name, role);
+            } catch (Exception e) {
+                throw new LibraryException("DB error while creating user.", e);
+            }
+        });
     }
 
     public int addBook(String title, String author) throws LibraryException {
-        try {
-            return bookRepo.addBook(title, author);
-        } catch (Exception e) {
-            throw new LibraryException("DB error while adding book.", e);
-        }
+        return timed(ServiceOperation.ADD_BOOK, () -> {
+            try (Connection conn = db.getConnection()) {
+                return new BookRepository(conn).addBook(title, author);
+            } catch (Exception e) {
+                throw new LibraryException("DB error while adding book.", e);
+            }
+        });
     }
 
     public List<User> listUsers() throws LibraryException {
-        try {
-            return userRepo.findAll();
-        } catch (Exception e) {
-            throw new LibraryException("DB error while listing users.", e);
-        }
+        return timed(ServiceOperation.LIST_USERS, () -> {
+            try (Connection conn = db.getReadConnection()) {
+                return new UserRepository(conn).findAll();
+            } catch (Exception e) {
+                throw new LibraryException("DB error while listing users.", e);
+            }
+        });
     }
 
     public List<Book> listBooks() throws LibraryException {
+        return timed(ServiceOperation.LIST_BOOKS, () -> {
+            try (Connection conn = db.getReadConnection()) {
+                return new BookRepository(conn).findAll();
+            } catch (Exception e) {
+                throw new LibraryException("DB error while listing books.", e);
+            }
+        });
+    }
+
+    public List<Book> searchBooks(String query, int limit) throws LibraryException {
+        return timed(ServiceOperation.SEARCH_BOOKS, () -> {
+            if (query == null || query.isBlank()) return List.of();
+            int bounded = Math.max(1, Math.min(limit, MAX_SEARCH_RESULTS));
+            try (Connection conn = db.getReadConnection()) {
+                return new BookRepository(conn).search(query, bounded);
+            } catch (Exception e) {
+                throw new LibraryException("DB error while searching books.", e);
+            }
+        });
+    }
+
+    public List<Loan> listLoans() throws LibraryException {
+        return timed(ServiceOperation.LIST_LOANS, () -> {
+            try (Connection conn = db.getReadConnection()) {
+                return new LoanRepository(conn).listAllLoans();
+            } catch (Exception e) {
+                throw new LibraryException("DB error while listing loans.", e);
+            }
+        });
+    }
+
+    public List<Reservation> listReservations() throws LibraryException {
+        return timed(ServiceOperation.LIST_RESERVATIONS, () -> {
+            try {
+                expiry.ensureCurrent();
+                try (Connection conn = db.getReadConnection()) {
+                    return new ReservationRepository(conn).listAll();
+                }
+            } catch (Exception e) {
+                throw new LibraryException("DB error while listing reservations.", e);
+            }
+        });
+    }
+
+    public List<Reservation> getReservationQueue(int bookId) throws LibraryException {
+        return timed(ServiceOperation.GET_RESERVATION_QUEUE, () -> {
+            ensureReservationsCurrent("DB error while loading reservation queue.");
+            return reservationIndex.queue(bookId);
+        });
+    }
+
+    public ReservationPosition getReservationPosition(int userId, int bookId) throws LibraryException {
+        return timed(ServiceOperation.GET_RESERVATION_POSITION, () -> {
+            ensureReservationsCurrent("DB error while loading reservation position.");
+            LocalDate today = LocalDate.now();
+            ReservationPosition position = reservationIndex.positionOf(userId, bookId, availableFrom(bookId, today), today);
+            if (position == null) {
+                throw new NotFoundException("No active reservation found: userId=" + userId + ", bookId=" + bookId);
+            }
+            return position;
+        });
+    }
+
+    public ReservationPosition estimateWait(int bookId) throws LibraryException {
+        return timed(ServiceOperation.ESTIMATE_WAIT, () -> {
+            ensureReservationsCurrent("DB error while estimating wait.");
+            LocalDate today = LocalDate.now();
+            return reservationIndex.nextPosition(bookId, availableFrom(bookId, today), today);
+        });
+    }
+
+    private LocalDate availableFrom(int bookId, LocalDate today) {
+        LocalDate due = dueDateIndex.dueDate(bookId);
+        return due == null ? today : due;
+    }
+
+    public int rebuildReservationIndex() throws LibraryException {
+        return timed(ServiceOperation.REBUILD_RESERVATION_INDEX, () -> {
+            synchronized (reservationIndexLoad) {
+                reservationIndex.clear();
+                dueDateIndex.clear();
+            }
+            ensureReservationsCurrent("DB error while rebuilding reservation index.");
+            return reservationIndex.size();
+        });
+    }
+
+    public CirculationStats getStats(int days, int topBooks) throws LibraryException {
+        return timed(ServiceOperation.GET_STATS, () -> {
+            try {
+                expiry.ensureCurrent();
+                LocalDate today = LocalDate.now();
+                try (Connection conn = db.getReadConnection()) {
+                    // One read transaction so totals, days and top books all come from the same WAL snapshot.
+                    conn.setAutoCommit(false);
+                    StatsRepository stats = new StatsRepository(conn);
+                    long[] totals = stats.findTotals();
+                    CirculationStats result = new CirculationStats(totals[0], totals[1], totals[2], totals[3],
+                            stats.findDays(today.minusDays(Math.max(1, Math.min(days, MAX_STATS_DAYS)) - 1)),
+                            stats.findTopBooks(pageSize(topBooks), today),
+                            stats.findAverageLoanDays());
+                    conn.commit();
+                    return result;
+                }
+            } catch (Exception e) {
+                throw new LibraryException("DB error while loading circulation statistics.", e);
+            }
+        });
+    }
+
+    public BookCirculation getBookStats(int bookId) throws LibraryException {
+        return timed(ServiceOperation.GET_BOOK_STATS, () -> {
+            BookCirculation stats;
+            try (Connection conn = db.getReadConnection()) {
+                stats = new StatsRepository(conn).findBook(bookId, LocalDate.now());
+            } catch (Exception e) {
+                throw new LibraryException("DB error while loading book statistics.", e);
+            }
+            if (stats == null) throw new NotFoundException("No circulation recorded for book: id=" + bookId);
+            return stats;
+        });
+    }
+
+    public void rebuildStats() throws LibraryException {
+        timed(ServiceOperation.REBUILD_STATS, () -> {
+            ensureReservationsCurrent("DB error while rebuilding circulation statistics.");
+            try (Connection conn = db.getConnection()) {
+                return inTransaction(conn, c -> {
+                    new StatsRepository(c).rebuild();
+                    return 0;
+                }, "DB error while rebuilding circulation statistics.");
+            } catch (SQLException e) {
+                throw new LibraryException("DB error while rebuilding circulation statistics.", e);
+            }
+        });
+    }
+
+    public ServiceMetrics metrics() {
+        return metrics;
+    }
+
+    public CacheStats userCacheStats() {
+        return userCache.stats();
+    }
+
+    public CacheStats bookCacheStats() {
+        return bookCache.stats();
+    }
+
+    public long groupCommitBatches() {
+        return groupCommit == null ? 0 : groupCommit.getBatches();
+    }
+
+    public long groupCommitOperations() {
+        return groupCommit == null ? 0 : groupCommit.getOperations();
+    }
+
+    public int repairOpenLoanCounters() throws LibraryException {
+        return timed(ServiceOperation.REPAIR_OPEN_LOAN_COUNTERS, () -> {
+            try (Connection conn = db.getConnection()) {
+                return new UserRepository(conn).recomputeOpenLoanCounts();
+            } catch (Exception e) {
+                throw new LibraryException("DB error while repairing open loan counters.", e);
+            }
+        });
+    }
+
+    public Stream<Book> streamBooks(int fetchSize) throws LibraryException {
+        Connection conn = null;
         try {
-            return bookRepo.findAll();
+            conn = db.getReadConnection();
+            return new BookRepository(conn).streamAll(fetchSize).onClose(closing(conn));
         } catch (Exception e) {
-            throw new LibraryException("DB error while listing books.", e);
+            closing(conn).run();
+            throw new LibraryException("DB error while streaming books.", e);
         }
     }
 
-    public List<Loan> listLoans() throws LibraryException {
+    public Stream<Loan> streamLoans(int fetchSize) throws LibraryException {
+        Connection conn = null;
         try {
-            return loanRepo.listAllLoans();
+            conn = db.getReadConnection();
+            return new LoanRepository(conn).streamAll(fetchSize).onClose(closing(conn));
         } catch (Exception e) {
-            throw new LibraryException("DB error while listing loans.", e);
+            closing(conn).run();
+            throw new LibraryException("DB error while streaming loans.", e);
         }
     }
 
-    public List<Reservation> listReservations() throws LibraryException {
+    public Stream<Reservation> streamReservations(int fetchSize) throws LibraryException {
+        Connection conn = null;
         try {
-            reservationRepo.expireOldReservations(LocalDate.now());
-            return reservationRepo.listAll();
+            conn = db.getReadConnection();
+            return new ReservationRepository(conn).streamAll(fetchSize).onClose(closing(conn));
         } catch (Exception e) {
-            throw new LibraryException("DB error while listing reservations.", e);
+            closing(conn).run();
+            throw new LibraryException("DB error while streaming reservations.", e);
         }
     }
 
+    public Page<User> listUsersPage(String cursor, int limit) throws LibraryException {
+        return timed(ServiceOperation.LIST_USERS_PAGE, () -> {
+            int beforeId = decodeCursor(cursor);
+            int size = pageSize(limit);
+            try (Connection conn = db.getReadConnection()) {
+                return toPage(new UserRepository(conn).findPage(beforeId, size + 1), size, User::getId);
+            } catch (Exception e) {
+                throw new LibraryException("DB error while listing users.", e);
+            }
+        });
+    }
+
+    public Page<Book> listBooksPage(String cursor, int limit) throws LibraryException {
+        return timed(ServiceOperation.LIST_BOOKS_PAGE, () -> {
+            int beforeId = decodeCursor(cursor);
+            int size = pageSize(limit);
+            try (Connection conn = db.getReadConnection()) {
+                return toPage(new BookRepository(conn).findPage(beforeId, size + 1), size, Book::getId);
+            } catch (Exception e) {
+                throw new LibraryException("DB error while listing books.", e);
+            }
+        });
+    }
+
+    public Page<Loan> listLoansPage(String cursor, int limit) throws LibraryException {
+        return timed(ServiceOperation.LIST_LOANS_PAGE, () -> {
+            int beforeId = decodeCursor(cursor);
+            int size = pageSize(limit);
+            try (Connection conn = db.getReadConnection()) {
+                return toPage(new LoanRepository(conn).findPage(beforeId, size + 1), size, Loan::getId);
+            } catch (Exception e) {
+                throw new LibraryException("DB error while listing loans.", e);
+            }
+        });
+    }
+
+    public Page<Reservation> listReservationsPage(String cursor, int limit) throws LibraryException {
+        return timed(ServiceOperation.LIST_RESERVATIONS_PAGE, () -> {
+            int beforeId = decodeCursor(cursor);
+            int size = pageSize(limit);
+            try {
+                expiry.ensureCurrent();
+                try (Connection conn = db.getReadConnection()) {
+                    return toPage(new ReservationRepository(conn).findPage(beforeId, size + 1), size, Reservation::getId);
+                }
+            } catch (Exception e) {
+                throw new LibraryException("DB error while listing reservations.", e);
+            }
+        });
+    }
+
     public int reserveBook(int userId, int bookId) throws LibraryException {
+        long start = System.nanoTime();
         try {
-            reservationRepo.expireOldReservations(LocalDate.now());
+            int result = groupCommit != null
+                    ? await(submit(conn -> reserveInTransaction(conn, userId, bookId), "DB error while reserving book."),
+                            "DB error while reserving book.")
+                    : reserveBookNow(userId, bookId);
+            metrics.success(ServiceOperation.RESERVE_BOOK, start);
+            return result;
+        } catch (LibraryException | RuntimeException e) {
+            metrics.failure(ServiceOperation.RESERVE_BOOK, start, e);
+            throw e;
+        }
+    }
 
-            User user = userRepo.findById(userId);
-            if (user == null) throw new NotFoundException("User not found: id=" + userId);
+    public CompletableFuture<Integer> reserveBookAsync(int userId, int bookId) {
+        long start = System.nanoTime();
+        CompletableFuture<Integer> result = groupCommit == null
+                ? completed(() -> reserveBookNow(userId, bookId))
+                : submit(conn -> reserveInTransaction(conn, userId, bookId), "DB error while reserving book.");
+        return recorded(ServiceOperation.RESERVE_BOOK, start, result);
+    }
 
-            Book book = bookRepo.findById(bookId);
-            if (book == null) throw new NotFoundException("Book not found: id=" + bookId);
+    private int reserveBookNow(int userId, int bookId) throws LibraryException {
+        ensureReservationsCurrent("Unexpected error while reserving book.");
+        StripedLocks.Held held = StripedLocks.lockAll(bookLocks, new int[]{bookId}, userLocks, userId);
+        try (Connection conn = db.getConnection()) {
+            return inTransaction(conn, c -> reserveInTransaction(c, userId, bookId), "DB error while reserving book.");
+        } catch (SQLException e) {
+            throw new LibraryException("DB error while reserving book.", e);
+        } finally {
+            held.close();
+        }
+    }
 
-            if (reservationRepo.hasActiveReservation(userId, bookId)) {
-                throw new ReservationExistsException("You already have an active reservation for this book.");
+    public void cancelReservation(int reservationId) throws LibraryException {
+        timed(ServiceOperation.CANCEL_RESERVATION, () -> {
+            ensureReservationsCurrent("DB error while cancelling reservation.");
+            try (Connection conn = db.getConnection()) {
+                return inTransaction(conn, c -> {
+                    if (!new ReservationRepository(c, reservationIndex).cancelReservation(reservationId)) {
+                        throw new NotFoundException("No active reservation found: id=" + reservationId);
+                    }
+                    return reservationId;
+                }, "DB error while cancelling reservation.");
+            } catch (SQLException e) {
+                throw new LibraryException("DB error while cancelling reservation.", e);
             }
+        });
+    }
 
-            boolean freeToTake = book.isAvailable() && !loanRepo.hasOpenLoanForBook(bookId);
+    private int reserveInTransaction(Connection conn, int userId, int bookId) throws LibraryException, SQLException {
+        UserRepository userRepo = new UserRepository(conn, userCache);
+        BookRepository bookRepo = new BookRepository(conn, bookCache);
+        LoanRepository loanRepo = new LoanRepository(conn, dueDateIndex);
+        ReservationRepository reservationRepo = new ReservationRepository(conn, reservationIndex);
 
-            if (freeToTake) {
-                try {
-                    int loanId = borrowBook(userId, bookId);
-                    return -loanId;
-                } catch (BorrowLimitExceededException | ReservationNotAllowedException | BookUnavailableException e) {
-                    // fall through to reservation creation
-                }
-            }
+        User user = userRepo.findById(userId);
+        if (user == null) throw new NotFoundException("User not found: id=" + userId);
 
-            LocalDate expiresAt = LocalDate.now().plusDays(RESERVATION_EXPIRES_DAYS);
-            return reservationRepo.createReservation(userId, bookId, expiresAt);
+        Book book = bookRepo.findById(bookId);
+        if (book == null) throw new NotFoundException("Book not found: id=" + bookId);
 
-        } catch (LibraryException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new LibraryException("DB error while reserving book.", e);
+        if (reservationRepo.hasActiveReservation(userId, bookId)) {
+            throw new ReservationExistsException("You already have an active reservation for this book.");
         }
+
+        boolean freeToTake = book.isAvailable() && !loanRepo.hasOpenLoanForBook(bookId);
+
+        if (freeToTake) {
+            try {
+                int loanId = borrowInTransaction(conn, userId, bookId);
+                return -loanId;
+            } catch (BorrowLimitExceededException | ReservationNotAllowedException | BookUnavailableException e) {
+                // fall through to reservation creation
+            }
+        }
+
+        LocalDate expiresAt = LocalDate.now().plusDays(RESERVATION_EXPIRES_DAYS);
+        return reservationRepo.createReservation(user, bookId, expiresAt);
     }
 
     public int borrowBook(int userId, int bookId) throws LibraryException {
-        boolean oldAutoCommit = true;
+        long start = System.nanoTime();
         try {
-            oldAutoCommit = conn.getAutoCommit();
-            conn.setAutoCommit(false);
+            int loanId = groupCommit != null
+                    ? await(submit(conn -> borrowInTransaction(conn, userId, bookId), "Unexpected error while borrowing book."),
+                            "Unexpected error while borrowing book.")
+                    : borrowBookNow(userId, bookId);
+            metrics.success(ServiceOperation.BORROW_BOOK, start);
+            return loanId;
+        } catch (LibraryException | RuntimeException e) {
+            metrics.failure(ServiceOperation.BORROW_BOOK, start, e);
+            throw e;
+        }
+    }
+
+    public CompletableFuture<Integer> borrowBookAsync(int userId, int bookId) {
+        long start = System.nanoTime();
+        CompletableFuture<Integer> result = groupCommit == null
+                ? completed(() -> borrowBookNow(userId, bookId))
+                : submit(conn -> borrowInTransaction(conn, userId, bookId), "Unexpected error while borrowing book.");
+        return recorded(ServiceOperation.BORROW_BOOK, start, result);
+    }
+
+    private int borrowBookNow(int userId, int bookId) throws LibraryException {
+        ensureReservationsCurrent("Unexpected error while borrowing book.");
+        StripedLocks.Held held = StripedLocks.lockAll(bookLocks, new int[]{bookId}, userLocks, userId);
+        try (Connection conn = db.getConnection()) {
+            return inTransaction(conn, c -> borrowInTransaction(c, userId, bookId), "Unexpected error while borrowing book.");
+        } catch (SQLException e) {
+            throw new LibraryException("Unexpected error while borrowing book.", e);
+        } finally {
+            held.close();
+        }
+    }
 
-            reservationRepo.expireOldReservations(LocalDate.now());
+    public List<BatchItemResult> borrowBooks(int userId, List<Integer> bookIds) throws LibraryException {
+        return timed(ServiceOperation.BORROW_BOOKS, () -> {
+            ensureReservationsCurrent("Unexpected error while borrowing books.");
+            StripedLocks.Held held = StripedLocks.lockAll(bookLocks, toArray(bookIds), userLocks, userId);
+            try (Connection conn = db.getConnection()) {
+                return runBatch(conn, bookIds, bookId -> borrowInTransaction(conn, userId, bookId),
+                        "Unexpected error while borrowing books.");
+            } catch (SQLException e) {
+                throw new LibraryException("Unexpected error while borrowing books.", e);
+            } finally {
+                held.close();
+            }
+        });
+    }
 
-            User user = userRepo.findById(userId);
-            if (user == null) throw new NotFoundException("User not found: id=" + userId);
+    private int borrowInTransaction(Connection conn, int userId, int bookId) throws LibraryException, SQLException {
+        User user = new UserRepository(conn, userCache).findById(userId);
+        if (user == null) throw new NotFoundException("User not found: id=" + userId);
 
-            Book book = bookRepo.findById(bookId);
-            if (book == null) throw new NotFoundException("Book not found: id=" + bookId);
+        ReservationRepository reservationRepo = new ReservationRepository(conn, reservationIndex);
+        Reservation next = reservationRepo.findOldestActiveReservationForBook(bookId);
+        if ((next != null && next.getUserId() != userId)
+                || !new BookRepository(conn, bookCache).claimForBorrow(bookId, userId, user.getBorrowLimit())) {
+            throw explainRejectedBorrow(conn, user, bookId, reservationRepo);
+        }
 
-            if (!book.isAvailable() || loanRepo.hasOpenLoanForBook(bookId)) {
-                throw new BookUnavailableException("Book is not available now: id=" + bookId);
+        LocalDate dueDate = LocalDate.now().plusDays(user.getLoanPeriodDays());
+        int loanId = new LoanRepository(conn, dueDateIndex).createLoan(userId, bookId, dueDate);
+        reservationRepo.fulfillOldestForUser(bookId, userId, loanId);
+        return loanId;
+    }
+
+    private static LibraryException explainRejectedBorrow(Connection conn, User user, int bookId,
+                                                          ReservationRepository reservationRepo) throws SQLException {
+        Book book = new BookRepository(conn).findById(bookId);
+        if (book == null) return new NotFoundException("Book not found: id=" + bookId);
+
+        if (!book.isAvailable() || new LoanRepository(conn).hasOpenLoanForBook(bookId)) {
+            return new BookUnavailableException("Book is not available now: id=" + bookId);
+        }
+
+        Reservation oldest = reservationRepo.findOldestActiveReservationForBook(bookId);
+        if (oldest != null && oldest.getUserId() != user.getId()) {
+            return new ReservationNotAllowedException(
+                    "This book is reserved for another user (FIFO). Only the earliest reserver can borrow it now."
+            );
+        }
+
+        int openLoans = new UserRepository(conn).findOpenLoanCount(user.getId());
+        return new BorrowLimitExceededException(
+                "Borrow limit exceeded. Current open loans=" + openLoans +
+                        ", limit=" + user.getBorrowLimit() + " for role=" + user.getRole()
+        );
+    }
+
+    public void returnBook(int bookId) throws LibraryException {
+        long start = System.nanoTime();
+        try {
+            if (groupCommit != null) {
+                await(submit(conn -> returnInTransaction(conn, bookId), "Unexpected error while returning book."),
+                        "Unexpected error while returning book.");
+            } else {
+                returnBookNow(bookId);
             }
+            metrics.success(ServiceOperation.RETURN_BOOK, start);
+        } catch (LibraryException | RuntimeException e) {
+            metrics.failure(ServiceOperation.RETURN_BOOK, start, e);
+            throw e;
+        }
+    }
+
+    public CompletableFuture<Integer> returnBookAsync(int bookId) {
+        long start = System.nanoTime();
+        CompletableFuture<Integer> result = groupCommit == null
+                ? completed(() -> returnBookNow(bookId))
+                : submit(conn -> returnInTransaction(conn, bookId), "Unexpected error while returning book.");
+        return recorded(ServiceOperation.RETURN_BOOK, start, result);
+    }
+
+    private int returnBookNow(int bookId) throws LibraryException {
+        ensureReservationsCurrent("Unexpected error while returning book.");
+        StripedLocks.Held held = bookLocks.lock(bookId);
+        try (Connection conn = db.getConnection()) {
+            return inTransaction(conn, c -> returnInTransaction(c, bookId), "Unexpected error while returning book.");
+        } catch (SQLException e) {
+            throw new LibraryException("Unexpected error while returning book.", e);
+        } finally {
+            held.close();
+        }
+    }
 
-            Reservation oldest = reservationRepo.findOldestActiveReservationForBook(bookId);
-            if (oldest != null && oldest.getUserId() != userId) {
-                throw new ReservationNotAllowedException(
-                        "This book is reserved for another user (FIFO). Only the earliest reserver can borrow it now."
-                );
+    public List<BatchItemResult> returnBooks(List<Integer> bookIds) throws LibraryException {
+        return timed(ServiceOperation.RETURN_BOOKS, () -> {
+            ensureReservationsCurrent("Unexpected error while returning books.");
+            StripedLocks.Held held = bookLocks.lockAll(toArray(bookIds));
+            try (Connection conn = db.getConnection()) {
+                return runBatch(conn, bookIds, bookId -> returnInTransaction(conn, bookId),
+                        "Unexpected error while returning books.");
+            } catch (SQLException e) {
+                throw new LibraryException("Unexpected error while returning books.", e);
+            } finally {
+                held.close();
             }
+        });
+    }
 
-            int openLoans = loanRepo.countOpenLoansByUser(userId);
-            if (openLoans >= user.getBorrowLimit()) {
-                throw new BorrowLimitExceededException(
-                        "Borrow limit exceeded. Current open loans=" + openLoans +
-                                ", limit=" + user.getBorrowLimit() + " for role=" + user.getRole()
-                );
+    private int returnInTransaction(Connection conn, int bookId) throws LibraryException, SQLException {
+        UserRepository userRepo = new UserRepository(conn, userCache);
+        BookRepository bookRepo = new BookRepository(conn, bookCache);
+        LoanRepository loanRepo = new LoanRepository(conn, dueDateIndex);
+        ReservationRepository reservationRepo = new ReservationRepository(conn, reservationIndex);
+
+        Book book = bookRepo.findById(bookId);
+        if (book == null) throw new NotFoundException("Book not found: id=" + bookId);
+
+        Loan openLoan = loanRepo.findOpenLoanByBook(bookId);
+        if (openLoan == null) throw new NotFoundException("No open loan found for book: id=" + bookId);
+
+        LocalDate today = LocalDate.now();
+        long overdueDays = ChronoUnit.DAYS.between(openLoan.getDueDate(), today);
+        int fine = overdueDays > 0 ? (int) overdueDays * FINE_CENTS_PER_DAY : 0;
+
+        loanRepo.closeLoanWithFine(openLoan, fine);
+        bookRepo.setAvailability(bookId, true);
+
+        Reservation next = reservationRepo.findOldestActiveReservationForBook(bookId);
+        if (next != null) {
+            User reservedUser = userRepo.findById(next.getUserId());
+            if (reservedUser != null) {
+                if (bookRepo.claimForBorrow(bookId, reservedUser.getId(), reservedUser.getBorrowLimit())) {
+                    LocalDate due = LocalDate.now().plusDays(reservedUser.getLoanPeriodDays());
+                    int newLoanId = loanRepo.createLoan(reservedUser.getId(), bookId, due);
+                    reservationRepo.fulfillReservation(next.getId(), newLoanId);
+                    TransactionHooks.afterCommit(conn, metrics::autoFulfilled);
+                }
             }
+        }
 
-            LocalDate dueDate = LocalDate.now().plusDays(user.getLoanPeriodDays());
+        return openLoan.getId();
+    }
 
-            bookRepo.setAvailability(bookId, false);
-            int loanId = loanRepo.createLoan(userId, bookId, dueDate);
+    private interface ServiceCall {
+        int call() throws LibraryException;
+    }
 
-            if (oldest != null && oldest.getUserId() == userId) {
-                reservationRepo.fulfillReservation(oldest.getId(), loanId);
-            }
+    private interface TimedCall<T> {
+        T call() throws LibraryException;
+    }
 
-            conn.commit();
-            return loanId;
+    private <T> T timed(ServiceOperation operation, TimedCall<T> call) throws LibraryException {
+        long start = System.nanoTime();
+        try {
+            T result = call.call();
+            metrics.success(operation, start);
+            return result;
+        } catch (LibraryException | RuntimeException e) {
+            metrics.failure(operation, start, e);
+            throw e;
+        }
+    }
 
+    private CompletableFuture<Integer> recorded(ServiceOperation operation, long start, CompletableFuture<Integer> future) {
+        return future.whenComplete((result, error) -> {
+            if (error == null) metrics.success(operation, start);
+            else metrics.failure(operation, start, error);
+        });
+    }
+
+    private CompletableFuture<Integer> submit(TransactionalOperation operation, String failureMessage) {
+        try {
+            ensureReservationsCurrent(failureMessage);
         } catch (LibraryException e) {
-            rollbackQuietly();
-            throw e;
-        } catch (Exception e) {
-            rollbackQuietly();
-            throw new LibraryException("Unexpected error while borrowing book.", e);
-        } finally {
-            restoreAutoCommitQuietly(oldAutoCommit);
+            return CompletableFuture.failedFuture(e);
         }
+        return groupCommit.submit(operation, failureMessage);
     }
 
-    public void returnBook(int bookId) throws LibraryException {
+    private static CompletableFuture<Integer> completed(ServiceCall call) {
+        try {
+            return CompletableFuture.completedFuture(call.call());
+        } catch (LibraryException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static int await(CompletableFuture<Integer> future, String failureMessage) throws LibraryException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof LibraryException le) throw le;
+            throw new LibraryException(failureMessage, e.getCause());
+        }
+    }
+
+    private int inTransaction(Connection conn, TransactionalOperation operation, String failureMessage)
+            throws LibraryException {
         boolean oldAutoCommit = true;
         try {
             oldAutoCommit = conn.getAutoCommit();
             conn.setAutoCommit(false);
 
-            reservationRepo.expireOldReservations(LocalDate.now());
+            int result = operation.apply(conn);
 
-            Book book = bookRepo.findById(bookId);
-            if (book == null) throw new NotFoundException("Book not found: id=" + bookId);
+            conn.commit();
+            return result;
+        } catch (LibraryException e) {
+            rollbackQuietly(conn);
+            throw e;
+        } catch (Exception e) {
+            rollbackQuietly(conn);
+            throw new LibraryException(failureMessage, e);
+        } finally {
+            restoreAutoCommitQuietly(conn, oldAutoCommit);
+        }
+    }
 
-            Loan openLoan = loanRepo.findOpenLoanByBook(bookId);
-            if (openLoan == null) throw new NotFoundException("No open loan found for book: id=" + bookId);
+    private interface BatchItem {
+        int apply(int bookId) throws LibraryException, SQLException;
+    }
 
-            LocalDate today = LocalDate.now();
-            long overdueDays = ChronoUnit.DAYS.between(openLoan.getDueDate(), today);
-            int fine = overdueDays > 0 ? (int) overdueDays * FINE_CENTS_PER_DAY : 0;
-
-            loanRepo.closeLoanWithFine(openLoan.getId(), fine);
-            bookRepo.setAvailability(bookId, true);
-
-            Reservation next = reservationRepo.findOldestActiveReservationForBook(bookId);
-            if (next != null) {
-                User reservedUser = userRepo.findById(next.getUserId());
-                if (reservedUser != null) {
-                    int openLoans = loanRepo.countOpenLoansByUser(reservedUser.getId());
-                    if (openLoans < reservedUser.getBorrowLimit()) {
-                        LocalDate due = LocalDate.now().plusDays(reservedUser.getLoanPeriodDays());
-                        bookRepo.setAvailability(bookId, false);
-                        int newLoanId = loanRepo.createLoan(reservedUser.getId(), bookId, due);
-                        reservationRepo.fulfillReservation(next.getId(), newLoanId);
-                    }
+    private List<BatchItemResult> runBatch(Connection conn, List<Integer> bookIds, BatchItem item,
+                                                  String failureMessage) throws LibraryException {
+        List<BatchItemResult> results = new ArrayList<>(bookIds.size());
+        boolean oldAutoCommit = true;
+        try {
+            oldAutoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+
+            for (int bookId : bookIds) {
+                Savepoint savepoint = conn.setSavepoint();
+                try {
+                    results.add(BatchItemResult.success(bookId, item.apply(bookId)));
+                    conn.releaseSavepoint(savepoint);
+                } catch (LibraryException e) {
+                    conn.rollback(savepoint);
+                    metrics.savepointRollback();
+                    results.add(BatchItemResult.failure(bookId, e));
+                } catch (SQLException e) {
+                    conn.rollback(savepoint);
+                    metrics.savepointRollback();
+                    results.add(BatchItemResult.failure(bookId, new LibraryException(failureMessage, e)));
                 }
             }
 
             conn.commit();
-        } catch (LibraryException e) {
-            rollbackQuietly();
-            throw e;
+            return results;
         } catch (Exception e) {
-            rollbackQuietly();
-            throw new LibraryException("Unexpected error while returning book.", e);
+            rollbackQuietly(conn);
+            throw new LibraryException(failureMessage, e);
         } finally {
-            restoreAutoCommitQuietly(oldAutoCommit);
+            restoreAutoCommitQuietly(conn, oldAutoCommit);
+        }
+    }
+
+    private static int[] toArray(List<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void ensureReservationsCurrent(String failureMessage) throws LibraryException {
+        try {
+            ensureReservationIndex();
+            expiry.ensureCurrent();
+        } catch (SQLException e) {
+            throw new LibraryException(failureMessage, e);
         }
     }
 
-    private void rollbackQuietly() {
+    private void ensureReservationIndex() throws SQLException {
+        if (reservationIndex.isLoaded() && dueDateIndex.isLoaded()) return;
+        synchronized (reservationIndexLoad) {
+            if (reservationIndex.isLoaded() && dueDateIndex.isLoaded()) return;
+            try (Connection conn = db.getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    reservationIndex.load(new ReservationRepository(conn).findAllActive());
+                    dueDateIndex.load(new LoanRepository(conn).findAllOpen());
+                    conn.commit();
+                } finally {
+                    restoreAutoCommitQuietly(conn, true);
+                }
+            }
+        }
+    }
+
+    private static int decodeCursor(String cursor) throws LibraryException {
+        try {
+            return Page.decodeCursor(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new LibraryException("Invalid page cursor.", e);
+        }
+    }
+
+    private static int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    private static <T> Page<T> toPage(List<T> rows, int size, ToIntFunction<T> idOf) {
+        if (rows.size() <= size) return new Page<>(rows, null);
+        List<T> items = rows.subList(0, size);
+        return new Page<>(items, Page.encodeCursor(idOf.applyAsInt(items.get(size - 1))));
+    }
+
+    private static Runnable closing(Connection conn) {
+        return () -> {
+            if (conn == null) return;
+            try { conn.close(); } catch (Exception ignored) {}
+        };
+    }
+
+    private void rollbackQuietly(Connection conn) {
+        metrics.rollback();
         try { conn.rollback(); } catch (Exception ignored) {}
     }
 
-    private void restoreAutoCommitQuietly(boolean oldAutoCommit) {
+    private static void restoreAutoCommitQuietly(Connection conn, boolean oldAutoCommit) {
         try { conn.setAutoCommit(oldAutoCommit); } catch (Exception ignored) {}
     }
+
+    @Override
+    public void close() {
+        if (groupCommit != null) groupCommit.close();
+    }
 }
@@ -0,0 +1,228 @@
+package edu.aitu.library.service;
+
+import edu.aitu.library.data.DB;
+import edu.aitu.library.model.IdRange;
+import edu.aitu.library.model.OverdueFine;
+import edu.aitu.library.model.OverdueReport;
+import edu.aitu.library.model.OverdueSummary;
+import edu.aitu.library.repository.OverdueRepository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public class OverdueFineService implements AutoCloseable {
+    private static final int CHUNK_LOAN_IDS = 50_000;
+
+    private interface WriteStep {
+        OverdueReport apply(OverdueRepository repo) throws SQLException;
+    }
+
+    private final DB db;
+    private final ForkJoinPool pool;
+    private final int centsPerDay;
+    private final Object runLock = new Object();
+
+    public OverdueFineService(DB db) {
+        this(db, db.readPoolStats().getMaxSize());
+    }
+
+    public OverdueFineService(DB db, int parallelism) {
+        this.db = db;
+        this.pool = new ForkJoinPool(Math.max(1, Math.min(parallelism, db.readPoolStats().getMaxSize())));
+        this.centsPerDay = LibraryService.FINE_CENTS_PER_DAY;
+    }
+
+    public OverdueReport run() throws SQLException {
+        return run(LocalDate.now());
+    }
+
+    public OverdueReport run(LocalDate asOf) throws SQLException {
+        synchronized (runLock) {
+            OverdueReport last = lastRun();
+            if (last == null || asOf.isBefore(last.getAsOf())) return full(asOf);
+            return incremental(asOf, last);
+        }
+    }
+
+    public OverdueReport runFull(LocalDate asOf) throws SQLException {
+        synchronized (runLock) {
+            return full(asOf);
+        }
+    }
+
+    public OverdueReport lastRun() throws SQLException {
+        try (Connection conn = db.getReadConnection()) {
+            return new OverdueRepository(conn).findLastRun();
+        }
+    }
+
+    public List<OverdueSummary> topUsers(int limit) throws SQLException {
+        try (Connection conn = db.getReadConnection()) {
+            return new OverdueRepository(conn).findTopUsers(limit);
+        }
+    }
+
+    public List<OverdueSummary> topBooks(int limit) throws SQLException {
+        try (Connection conn = db.getReadConnection()) {
+            return new OverdueRepository(conn).findTopBooks(limit);
+        }
+    }
+
+    public OverdueSummary userSummary(int userId) throws SQLException {
+        try (Connection conn = db.getReadConnection()) {
+            return new OverdueRepository(conn).findUserSummary(userId);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private OverdueReport full(LocalDate asOf) throws SQLException {
+        long start = System.nanoTime();
+        IdRange bounds;
+        try (Connection conn = db.getReadConnection()) {
+            bounds = new OverdueRepository(conn).loanIdBounds();
+        }
+        Accrual accrual = bounds == null ? new Accrual() : scan(bounds, asOf);
+        int maxLoanId = bounds == null ? 0 : bounds.getLast();
+
+        return write(repo -> {
+            repo.replaceAll(accrual.fines, summaries(accrual.users), summaries(accrual.books), asOf);
+            if (repo.deleteClosed() > 0) repo.rebuildSummaries();
+            return record(repo, asOf, false, maxLoanId, accrual.chunks, start);
+        });
+    }
+
+    private OverdueReport incremental(LocalDate asOf, OverdueReport last) throws SQLException {
+        long start = System.nanoTime();
+        return write(repo -> {
+            IdRange bounds = repo.loanIdBounds();
+            int maxLoanId = bounds == null ? last.getMaxLoanId() : Math.max(bounds.getLast(), last.getMaxLoanId());
+            repo.reaccrue(asOf, centsPerDay);
+            Accrual added = new Accrual(repo.findNewlyOverdue(last.getAsOf(), last.getMaxLoanId(), asOf, centsPerDay));
+            repo.insertFines(added.fines, asOf);
+            repo.addToSummaries(summaries(added.users), summaries(added.books));
+            return record(repo, asOf, true, maxLoanId, 0, start);
+        });
+    }
+
+    private OverdueReport record(OverdueRepository repo, LocalDate asOf, boolean incremental, int maxLoanId,
+                                 int chunks, long start) throws SQLException {
+        long[] totals = repo.totals();
+        OverdueReport report = new OverdueReport(asOf, incremental, maxLoanId, chunks, (int) totals[0], totals[1],
+                (int) totals[2], (int) totals[3], (System.nanoTime() - start) / 1_000_000);
+        repo.recordRun(report);
+        return report;
+    }
+
+    private OverdueReport write(WriteStep step) throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                OverdueReport report = step.apply(new OverdueRepository(conn));
+                conn.commit();
+                return report;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private Accrual scan(IdRange bounds, LocalDate asOf) throws SQLException {
+        try {
+            return pool.invoke(new ChunkTask(bounds.getFirst(), bounds.getLast(), asOf));
+        } catch (IllegalStateException e) {
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof SQLException sql) throw sql;
+            }
+            throw e;
+        }
+    }
+
+    private static List<OverdueSummary> summaries(Map<Integer, long[]> totals) {
+        List<OverdueSummary> list = new ArrayList<>(totals.size());
+        for (Map.Entry<Integer, long[]> e : totals.entrySet()) {
+            list.add(new OverdueSummary(e.getKey(), (int) e.getValue()[0], e.getValue()[1]));
+        }
+        return list;
+    }
+
+    @SuppressWarnings("serial")
+    private final class ChunkTask extends RecursiveTask<Accrual> {
+        private final int first;
+        private final int last;
+        private final LocalDate asOf;
+
+        ChunkTask(int first, int last, LocalDate asOf) {
+            this.first = first;
+            this.last = last;
+            this.asOf = asOf;
+        }
+
+        @Override
+        protected Accrual compute() {
+            if ((long) last - first < CHUNK_LOAN_IDS) return scanChunk();
+            int mid = (int) (((long) first + last) >>> 1);
+            ChunkTask left = new ChunkTask(first, mid, asOf);
+            left.fork();
+            Accrual right = new ChunkTask(mid + 1, last, asOf).compute();
+            return left.join().merge(right);
+        }
+
+        private Accrual scanChunk() {
+            try (Connection conn = db.getReadConnection()) {
+                return new Accrual(new OverdueRepository(conn).findOverdue(first, last, asOf, centsPerDay));
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to scan loans " + first + ".." + last + ".", e);
+            }
+        }
+    }
+
+    private static final class Accrual {
+        private final List<OverdueFine> fines;
+        private final Map<Integer, long[]> users = new HashMap<>();
+        private final Map<Integer, long[]> books = new HashMap<>();
+        private int chunks;
+
+        Accrual() {
+            this.fines = new ArrayList<>();
+        }
+
+        Accrual(List<OverdueFine> fines) {
+            this.fines = fines;
+            this.chunks = 1;
+            for (OverdueFine f : fines) {
+                add(users, f.getUserId(), 1, f.getAccruedCents());
+                add(books, f.getBookId(), 1, f.getAccruedCents());
+            }
+        }
+
+        Accrual merge(Accrual other) {
+            Accrual into = fines.size() >= other.fines.size() ? this : other;
+            Accrual from = into == this ? other : this;
+            into.fines.addAll(from.fines);
+            from.users.forEach((id, t) -> add(into.users, id, t[0], t[1]));
+            from.books.forEach((id, t) -> add(into.books, id, t[0], t[1]));
+            into.chunks += from.chunks;
+            return into;
+        }
+
+        private static void add(Map<Integer, long[]> totals, int id, long loans, long cents) {
+            long[] t = totals.computeIfAbsent(id, k -> new long[2]);
+            t[0] += loans;
+            t[1] += cents;
+        }
+    }
+}
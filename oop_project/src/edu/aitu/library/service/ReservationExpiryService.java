@@ -0,0 +1,134 @@
+package edu.aitu.library.service;
+
+import edu.aitu.library.cache.ReservationIndex;
+import edu.aitu.library.data.DB;
+import edu.aitu.library.repository.ReservationRepository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ReservationExpiryService implements AutoCloseable {
+    private final DB db;
+    private final Duration interval;
+    private ScheduledExecutorService scheduler;
+    private volatile ReservationIndex index;
+
+    private volatile LocalDate watermark;
+    private final Object runLock = new Object();
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder expiredTotal = new LongAdder();
+    private volatile long lastRunNanos;
+    private volatile Instant lastRunAt;
+    private volatile Exception lastFailure;
+
+    public ReservationExpiryService(DB db) {
+        this(db, null);
+    }
+
+    public ReservationExpiryService(DB db, Duration interval) {
+        this.db = db;
+        this.interval = interval;
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "reservation-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+
+        if (interval != null) {
+            scheduler.scheduleWithFixedDelay(this::tick, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            scheduler.execute(this::tick);
+            scheduleNextDayBoundary();
+        }
+    }
+
+    public void ensureCurrent() throws SQLException {
+        if (LocalDate.now().equals(watermark)) return;
+        runNow();
+    }
+
+    public int runNow() throws SQLException {
+        synchronized (runLock) {
+            LocalDate today = LocalDate.now();
+            if (today.equals(watermark) && interval == null) return 0;
+
+            long start = System.nanoTime();
+            try (Connection conn = db.getConnection()) {
+                int expired;
+                conn.setAutoCommit(false);
+                try {
+                    expired = new ReservationRepository(conn, index).expireOldReservations(today);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+                watermark = today;
+                runs.increment();
+                expiredTotal.add(expired);
+                lastRunNanos = System.nanoTime() - start;
+                lastRunAt = Instant.now();
+                return expired;
+            } catch (SQLException | RuntimeException e) {
+                failures.increment();
+                lastFailure = e;
+                throw e;
+            }
+        }
+    }
+
+    void useIndex(ReservationIndex index) {
+        this.index = index;
+    }
+
+    public LocalDate getWatermark() { return watermark; }
+    public long getRuns() { return runs.sum(); }
+    public long getFailures() { return failures.sum(); }
+    public long getExpiredTotal() { return expiredTotal.sum(); }
+    public double getLastRunMillis() { return lastRunNanos / 1_000_000.0; }
+    public Instant getLastRunAt() { return lastRunAt; }
+    public Exception getLastFailure() { return lastFailure; }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void tick() {
+        try {
+            runNow();
+        } catch (SQLException | RuntimeException e) {
+            // counted in failures and kept as lastFailure; the next tick or ensureCurrent() retries
+        }
+    }
+
+    private synchronized void scheduleNextDayBoundary() {
+        if (scheduler == null) return;
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime midnight = now.toLocalDate().plusDays(1).atStartOfDay();
+        long delay = Duration.between(now, midnight).toMillis() + 1;
+        scheduler.schedule(() -> {
+            tick();
+            scheduleNextDayBoundary();
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,59 @@
+package edu.aitu.library.service;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+class StripedLocks {
+
+    interface Held extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final ReentrantLock[] locks;
+
+    StripedLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes) - 1) << 1;
+        this.locks = new ReentrantLock[Math.max(1, size)];
+        for (int i = 0; i < locks.length; i++) locks[i] = new ReentrantLock();
+    }
+
+    Held lock(int key) {
+        ReentrantLock lock = locks[stripe(key)];
+        lock.lock();
+        return lock::unlock;
+    }
+
+    Held lockAll(int[] keys) {
+        int[] stripes = Arrays.stream(keys).map(this::stripe).distinct().sorted().toArray();
+        int acquired = 0;
+        try {
+            for (; acquired < stripes.length; acquired++) locks[stripes[acquired]].lock();
+        } catch (RuntimeException e) {
+            for (int i = acquired - 1; i >= 0; i--) locks[stripes[i]].unlock();
+            throw e;
+        }
+        return () -> {
+            for (int i = stripes.length - 1; i >= 0; i--) locks[stripes[i]].unlock();
+        };
+    }
+
+    static Held lockAll(StripedLocks outer, int[] outerKeys, StripedLocks inner, int innerKey) {
+        Held first = outer.lockAll(outerKeys);
+        try {
+            Held second = inner.lock(innerKey);
+            return () -> {
+                second.close();
+                first.close();
+            };
+        } catch (RuntimeException e) {
+            first.close();
+            throw e;
+        }
+    }
+
+    private int stripe(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (locks.length - 1);
+    }
+}
@@ -0,0 +1,10 @@
+package edu.aitu.library.service;
+
+import edu.aitu.library.exception.LibraryException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+interface TransactionalOperation {
+    int apply(Connection conn) throws LibraryException, SQLException;
+}
@@ -0,0 +1,52 @@
+package edu.aitu.library.sim;
+
+import java.util.Random;
+
+public class OperationMix {
+
+    public enum Operation { BORROW, RETURN, RESERVE, LIST }
+
+    private final int[] cumulative = new int[Operation.values().length];
+
+    public OperationMix(int borrow, int ret, int reserve, int list) {
+        int[] weights = {borrow, ret, reserve, list};
+        int sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] < 0) throw new IllegalArgumentException("Operation weight must not be negative.");
+            sum += weights[i];
+            cumulative[i] = sum;
+        }
+        if (sum == 0) throw new IllegalArgumentException("At least one operation weight must be positive.");
+    }
+
+    public static OperationMix parse(String spec) {
+        String[] parts = spec.split(",");
+        if (parts.length != 4) throw new IllegalArgumentException("Mix must be borrow,return,reserve,list: " + spec);
+        return new OperationMix(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+                Integer.parseInt(parts[2].trim()), Integer.parseInt(parts[3].trim()));
+    }
+
+    public Operation pick(Random rnd) {
+        int r = rnd.nextInt(total());
+        for (int i = 0; i < cumulative.length; i++) {
+            if (r < cumulative[i]) return Operation.values()[i];
+        }
+        return Operation.LIST;
+    }
+
+    public int total() {
+        return cumulative[cumulative.length - 1];
+    }
+
+    @Override
+    public String toString() {
+        int prev = 0;
+        StringBuilder sb = new StringBuilder("OperationMix{");
+        for (int i = 0; i < cumulative.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(Operation.values()[i].name().toLowerCase()).append('=').append(cumulative[i] - prev);
+            prev = cumulative[i];
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,41 @@
+package edu.aitu.library.sim;
+
+import edu.aitu.library.metrics.LatencyHistogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class OperationStats {
+    private final LatencyHistogram succeeded = new LatencyHistogram();
+    private final LatencyHistogram failed = new LatencyHistogram();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    void success(long nanos) {
+        succeeded.record(nanos);
+    }
+
+    void failure(Exception e, long nanos) {
+        failed.record(nanos);
+        errors.computeIfAbsent(errorName(e), k -> new LongAdder()).increment();
+    }
+
+    public LatencyHistogram getSucceeded() { return succeeded; }
+    public LatencyHistogram getFailed() { return failed; }
+
+    public long getCount() {
+        return succeeded.getCount() + failed.getCount();
+    }
+
+    public Map<String, Long> getErrors() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        errors.forEach((k, v) -> snapshot.put(k, v.sum()));
+        return snapshot;
+    }
+
+    private static String errorName(Exception e) {
+        String name = e.getClass().getSimpleName();
+        return e.getCause() == null ? name : name + "(" + e.getCause().getClass().getSimpleName() + ")";
+    }
+}
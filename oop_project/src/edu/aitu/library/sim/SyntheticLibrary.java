@@ -0,0 +1,30 @@
+package edu.aitu.library.sim;
+
+import java.util.Map;
+import java.util.Set;
+
+public class SyntheticLibrary {
+    private final int[] bookIdsByPopularity;
+    private final int[] userIds;
+    private final Set<Integer> lentBookIds;
+    private final Map<Integer, Integer> activeReservationsByBook;
+
+    public SyntheticLibrary(int[] bookIdsByPopularity, int[] userIds,
+                            Set<Integer> lentBookIds, Map<Integer, Integer> activeReservationsByBook) {
+        this.bookIdsByPopularity = bookIdsByPopularity;
+        this.userIds = userIds;
+        this.lentBookIds = lentBookIds;
+        this.activeReservationsByBook = activeReservationsByBook;
+    }
+
+    public int[] getBookIdsByPopularity() { return bookIdsByPopularity; }
+    public int[] getUserIds() { return userIds; }
+    public Set<Integer> getLentBookIds() { return lentBookIds; }
+    public Map<Integer, Integer> getActiveReservationsByBook() { return activeReservationsByBook; }
+
+    @Override
+    public String toString() {
+        return "SyntheticLibrary{books=" + bookIdsByPopularity.length + ", users=" + userIds.length +
+                ", lent=" + lentBookIds.size() + ", reservedBooks=" + activeReservationsByBook.size() + "}";
+    }
+}
@@ -0,0 +1,269 @@
+package edu.aitu.library.sim;
+
+import edu.aitu.library.data.DB;
+import edu.aitu.library.model.IdRange;
+import edu.aitu.library.model.Role;
+import edu.aitu.library.repository.BookRepository;
+import edu.aitu.library.repository.StatsRepository;
+import edu.aitu.library.repository.UserRepository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class SyntheticLibraryGenerator {
+    private static final int CHUNK = 5_000;
+    private static final int FINE_CENTS_PER_DAY = 200;
+    private static final int HISTORY_DAYS = 720;
+
+    private static final String[] WORDS = {
+            "river", "shadow", "garden", "empire", "silent", "winter", "code", "history", "ocean", "night",
+            "machine", "letters", "city", "journey", "science", "theory", "forest", "light", "stone", "music",
+            "algebra", "steppe", "mountain", "kingdom", "signal", "atlas", "memory", "harbor", "engine", "paper"
+    };
+    private static final String[] SURNAMES = {
+            "Abenov", "Smith", "Nurlanova", "Garcia", "Tanaka", "Kim", "Muller", "Rossi", "Ivanova", "Brown",
+            "Seitkali", "Dubois", "Novak", "Okafor", "Larsen", "Haddad", "Silva", "Chen", "Kowalski", "Omarov"
+    };
+
+    private final DB db;
+    private final Random rnd;
+    private final double zipfExponent;
+
+    public SyntheticLibraryGenerator(DB db, long seed, double zipfExponent) {
+        this.db = db;
+        this.rnd = new Random(seed);
+        this.zipfExponent = zipfExponent;
+    }
+
+    public SyntheticLibrary generate(int books, int users, double librarianShare, int historicalLoans) throws SQLException {
+        int[] bookIds = addBooks(books);
+        int[] userIds = addUsers(users, librarianShare);
+
+        int[] byPopularity = shuffle(bookIds);
+        ZipfDistribution popularity = new ZipfDistribution(byPopularity.length, zipfExponent);
+
+        addLoanHistory(byPopularity, userIds, popularity, historicalLoans);
+        Set<Integer> lent = lendPopularBooks(byPopularity, userIds, popularity);
+        Map<Integer, Integer> reserved = reservePopularBooks(byPopularity, userIds, lent);
+
+        try (Connection conn = db.getConnection()) {
+            new UserRepository(conn).recomputeOpenLoanCounts();
+            new StatsRepository(conn).rebuild();
+        }
+        return new SyntheticLibrary(byPopularity, userIds, lent, reserved);
+    }
+
+    private int[] addBooks(int count) throws SQLException {
+        int[] ids = new int[count];
+        int n = 0;
+        try (Connection conn = db.getConnection()) {
+            BookRepository repo = new BookRepository(conn);
+            while (n < count) {
+                int size = Math.min(CHUNK, count - n);
+                List<String> titles = new ArrayList<>(size);
+                List<String> authors = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    titles.add(capitalize(word()) + " " + word() + " of the " + word());
+                    authors.add(SURNAMES[rnd.nextInt(SURNAMES.length)] + " " + (char) ('A' + rnd.nextInt(26)) + ".");
+                }
+                IdRange range = inTransaction(conn, () -> repo.addBooks(titles, authors));
+                for (int id = range.getFirst(); id <= range.getLast(); id++) ids[n++] = id;
+            }
+        }
+        return ids;
+    }
+
+    private int[] addUsers(int count, double librarianShare) throws SQLException {
+        int[] ids = new int[count];
+        int n = 0;
+        try (Connection conn = db.getConnection()) {
+            UserRepository repo = new UserRepository(conn);
+            while (n < count) {
+                int size = Math.min(CHUNK, count - n);
+                List<String> names = new ArrayList<>(size);
+                List<Role> roles = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    names.add(capitalize(word()) + " " + SURNAMES[rnd.nextInt(SURNAMES.length)]);
+                    roles.add(rnd.nextDouble() < librarianShare ? Role.LIBRARIAN : Role.MEMBER);
+                }
+                IdRange range = inTransaction(conn, () -> repo.createUsers(names, roles));
+                for (int id = range.getFirst(); id <= range.getLast(); id++) ids[n++] = id;
+            }
+        }
+        return ids;
+    }
+
+    private void addLoanHistory(int[] byPopularity, int[] userIds, ZipfDistribution popularity, int count)
+            throws SQLException {
+        LocalDate today = LocalDate.now();
+        String sql = """
+                INSERT INTO loans(user_id, book_id, loan_date, due_date, return_date, fine_cents)
+                VALUES(?, ?, ?, ?, ?, ?)
+                """;
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            conn.setAutoCommit(false);
+            for (int i = 1; i <= count; i++) {
+                LocalDate loanDate = today.minusDays(30 + rnd.nextInt(HISTORY_DAYS));
+                LocalDate dueDate = loanDate.plusDays(14);
+                LocalDate returnDate = loanDate.plusDays(1 + rnd.nextInt(21));
+                long late = Math.max(0, returnDate.toEpochDay() - dueDate.toEpochDay());
+                ps.setInt(1, userIds[rnd.nextInt(userIds.length)]);
+                ps.setInt(2, byPopularity[popularity.sample(rnd.nextDouble())]);
+                ps.setString(3, loanDate.toString());
+                ps.setString(4, dueDate.toString());
+                ps.setString(5, returnDate.toString());
+                ps.setInt(6, (int) late * FINE_CENTS_PER_DAY);
+                ps.addBatch();
+                if (i % CHUNK == 0) {
+                    ps.executeBatch();
+                    conn.commit();
+                }
+            }
+            ps.executeBatch();
+            conn.commit();
+
+            addReservationHistory(conn, byPopularity, userIds, popularity, count / 10);
+            conn.commit();
+        }
+    }
+
+    private void addReservationHistory(Connection conn, int[] byPopularity, int[] userIds,
+                                       ZipfDistribution popularity, int count) throws SQLException {
+        LocalDate today = LocalDate.now();
+        String sql = """
+                INSERT INTO reservations(user_id, book_id, status, created_at, expires_at)
+                VALUES(?, ?, ?, ?, ?)
+                """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 1; i <= count; i++) {
+                LocalDate created = today.minusDays(30 + rnd.nextInt(HISTORY_DAYS));
+                ps.setInt(1, userIds[rnd.nextInt(userIds.length)]);
+                ps.setInt(2, byPopularity[popularity.sample(rnd.nextDouble())]);
+                ps.setString(3, rnd.nextInt(3) == 0 ? "CANCELLED" : "EXPIRED");
+                ps.setString(4, created.toString());
+                ps.setString(5, created.plusDays(7).toString());
+                ps.addBatch();
+                if (i % CHUNK == 0) ps.executeBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private Set<Integer> lendPopularBooks(int[] byPopularity, int[] userIds, ZipfDistribution popularity)
+            throws SQLException {
+        Set<Integer> lent = ConcurrentHashMap.newKeySet();
+        int target = Math.min(byPopularity.length / 5, userIds.length);
+        LocalDate today = LocalDate.now();
+        String loanSql = """
+                INSERT INTO loans(user_id, book_id, loan_date, due_date, return_date, fine_cents)
+                VALUES(?, ?, ?, ?, ?, 0)
+                """;
+        try (Connection conn = db.getConnection();
+             PreparedStatement loan = conn.prepareStatement(loanSql);
+             PreparedStatement book = conn.prepareStatement("UPDATE books SET available = 0 WHERE id = ?")) {
+            conn.setAutoCommit(false);
+            int attempts = 0;
+            while (lent.size() < target && attempts++ < target * 20) {
+                int bookId = byPopularity[popularity.sample(rnd.nextDouble())];
+                if (!lent.add(bookId)) continue;
+                LocalDate loanDate = today.minusDays(rnd.nextInt(20));
+                loan.setInt(1, userIds[lent.size() - 1]);
+                loan.setInt(2, bookId);
+                loan.setString(3, loanDate.toString());
+                loan.setString(4, loanDate.plusDays(14).toString());
+                loan.setNull(5, Types.VARCHAR);
+                loan.addBatch();
+                book.setInt(1, bookId);
+                book.addBatch();
+            }
+            loan.executeBatch();
+            book.executeBatch();
+            conn.commit();
+        }
+        return lent;
+    }
+
+    private Map<Integer, Integer> reservePopularBooks(int[] byPopularity, int[] userIds, Set<Integer> lent)
+            throws SQLException {
+        Map<Integer, Integer> reserved = new ConcurrentHashMap<>();
+        LocalDate today = LocalDate.now();
+        String sql = """
+                INSERT INTO reservations(user_id, book_id, status, created_at, expires_at)
+                VALUES(?, ?, 'ACTIVE', ?, ?)
+                """;
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            conn.setAutoCommit(false);
+            int budget = lent.size() / 2;
+            for (int bookId : byPopularity) {
+                if (budget <= 0) break;
+                if (!lent.contains(bookId)) continue;
+                int queue = 1 + rnd.nextInt(3);
+                Set<Integer> reservers = new HashSet<>();
+                for (int q = 0; q < queue; q++) {
+                    int userId = userIds[rnd.nextInt(userIds.length)];
+                    if (!reservers.add(userId)) continue;
+                    LocalDate created = today.minusDays(rnd.nextInt(5));
+                    ps.setInt(1, userId);
+                    ps.setInt(2, bookId);
+                    ps.setString(3, created.toString());
+                    ps.setString(4, created.plusDays(7).toString());
+                    ps.addBatch();
+                }
+                reserved.put(bookId, reservers.size());
+                budget--;
+            }
+            ps.executeBatch();
+            conn.commit();
+        }
+        return reserved;
+    }
+
+    private interface Work<T> {
+        T run() throws SQLException;
+    }
+
+    private static <T> T inTransaction(Connection conn, Work<T> work) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            T result = work.run();
+            conn.commit();
+            return result;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private int[] shuffle(int[] ids) {
+        int[] copy = ids.clone();
+        for (int i = copy.length - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int t = copy[i];
+            copy[i] = copy[j];
+            copy[j] = t;
+        }
+        return copy;
+    }
+
+    private String word() {
+        return WORDS[rnd.nextInt(WORDS.length)];
+    }
+
+    private static String capitalize(String s) {
+        return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+}
@@ -0,0 +1,72 @@
+package edu.aitu.library.sim;
+
+import edu.aitu.library.metrics.LatencyHistogram;
+
+import java.time.Duration;
+import java.util.Map;
+
+public class WorkloadReport {
+    private final int threads;
+    private final Duration elapsed;
+    private final Map<OperationMix.Operation, OperationStats> stats;
+    private final long databaseBytesBefore;
+    private final long databaseBytesAfter;
+
+    public WorkloadReport(int threads, Duration elapsed, Map<OperationMix.Operation, OperationStats> stats,
+                          long databaseBytesBefore, long databaseBytesAfter) {
+        this.threads = threads;
+        this.elapsed = elapsed;
+        this.stats = stats;
+        this.databaseBytesBefore = databaseBytesBefore;
+        this.databaseBytesAfter = databaseBytesAfter;
+    }
+
+    public int getThreads() { return threads; }
+    public Duration getElapsed() { return elapsed; }
+    public Map<OperationMix.Operation, OperationStats> getStats() { return stats; }
+    public long getDatabaseBytesBefore() { return databaseBytesBefore; }
+    public long getDatabaseBytesAfter() { return databaseBytesAfter; }
+
+    public long getTotalOperations() {
+        return stats.values().stream().mapToLong(OperationStats::getCount).sum();
+    }
+
+    public double throughput(long count) {
+        double seconds = elapsed.toNanos() / 1e9;
+        return seconds == 0 ? 0 : count / seconds;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("threads=%d  elapsed=%.1fs  total=%,d ops  throughput=%,.0f ops/s%n",
+                threads, elapsed.toMillis() / 1000.0, getTotalOperations(), throughput(getTotalOperations())));
+        sb.append(String.format("%-8s %10s %10s %9s %9s %9s %9s %9s %9s%n",
+                "op", "ok/s", "failed/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "mean ms"));
+        for (Map.Entry<OperationMix.Operation, OperationStats> e : stats.entrySet()) {
+            OperationStats s = e.getValue();
+            LatencyHistogram h = s.getSucceeded();
+            sb.append(String.format("%-8s %,10.0f %,10.0f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    e.getKey().name().toLowerCase(),
+                    throughput(h.getCount()), throughput(s.getFailed().getCount()),
+                    ms(h.percentileNanos(50)), ms(h.percentileNanos(90)), ms(h.percentileNanos(99)),
+                    ms(h.percentileNanos(99.9)), ms(h.getMaxNanos()), h.getMeanNanos() / 1e6));
+        }
+        sb.append("errors:").append(System.lineSeparator());
+        boolean any = false;
+        for (Map.Entry<OperationMix.Operation, OperationStats> e : stats.entrySet()) {
+            for (Map.Entry<String, Long> err : e.getValue().getErrors().entrySet()) {
+                sb.append(String.format("  %-8s %-48s %,10d%n", e.getKey().name().toLowerCase(), err.getKey(), err.getValue()));
+                any = true;
+            }
+        }
+        if (!any) sb.append("  none").append(System.lineSeparator());
+        sb.append(String.format("database size: %,d -> %,d bytes (%+,d)%n",
+                databaseBytesBefore, databaseBytesAfter, databaseBytesAfter - databaseBytesBefore));
+        return sb.toString();
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1e6;
+    }
+}
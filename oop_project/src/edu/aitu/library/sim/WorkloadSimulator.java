@@ -0,0 +1,142 @@
+package edu.aitu.library.sim;
+
+import edu.aitu.library.data.DB;
+import edu.aitu.library.exception.LibraryException;
+import edu.aitu.library.exception.NotFoundException;
+import edu.aitu.library.model.Page;
+import edu.aitu.library.service.LibraryService;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+public class WorkloadSimulator {
+    private static final int LIST_PAGE_SIZE = 20;
+    private static final int RETURN_PICK_ATTEMPTS = 8;
+
+    private final DB db;
+    private final LibraryService service;
+    private final SyntheticLibrary library;
+    private final OperationMix mix;
+    private final ZipfDistribution popularity;
+
+    public WorkloadSimulator(DB db, LibraryService service, SyntheticLibrary library, OperationMix mix, double zipfExponent) {
+        this.db = db;
+        this.service = service;
+        this.library = library;
+        this.mix = mix;
+        this.popularity = new ZipfDistribution(library.getBookIdsByPopularity().length, zipfExponent);
+    }
+
+    public WorkloadReport run(int threads, Duration duration) throws Exception {
+        Map<OperationMix.Operation, OperationStats> stats = new EnumMap<>(OperationMix.Operation.class);
+        for (OperationMix.Operation op : OperationMix.Operation.values()) stats.put(op, new OperationStats());
+
+        long sizeBefore = databaseBytes();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(pool.submit(() -> {
+                    ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        OperationMix.Operation op = mix.pick(rnd);
+                        long t0 = System.nanoTime();
+                        try {
+                            execute(op, rnd);
+                            stats.get(op).success(System.nanoTime() - t0);
+                        } catch (LibraryException e) {
+                            stats.get(op).failure(e, System.nanoTime() - t0);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> w : workers) w.get();
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        return new WorkloadReport(threads, elapsed, stats, sizeBefore, databaseBytes());
+    }
+
+    private void execute(OperationMix.Operation op, ThreadLocalRandom rnd) throws LibraryException {
+        switch (op) {
+            case BORROW -> {
+                int bookId = popularBook(rnd);
+                service.borrowBook(randomUser(rnd), bookId);
+                library.getLentBookIds().add(bookId);
+            }
+            case RETURN -> {
+                int bookId = lentBook(rnd);
+                try {
+                    service.returnBook(bookId);
+                } catch (NotFoundException e) {
+                    library.getLentBookIds().remove(bookId);
+                    throw e;
+                }
+                Integer waiting = library.getActiveReservationsByBook().computeIfPresent(bookId, (k, v) -> v > 1 ? v - 1 : null);
+                if (waiting == null) library.getLentBookIds().remove(bookId);
+            }
+            case RESERVE -> {
+                int bookId = popularBook(rnd);
+                int result = service.reserveBook(randomUser(rnd), bookId);
+                if (result < 0) library.getLentBookIds().add(bookId);
+                else library.getActiveReservationsByBook().merge(bookId, 1, Integer::sum);
+            }
+            case LIST -> {
+                int[] books = library.getBookIdsByPopularity();
+                service.listBooksPage(Page.encodeCursor(books[rnd.nextInt(books.length)] + 1), LIST_PAGE_SIZE);
+            }
+        }
+    }
+
+    private int popularBook(ThreadLocalRandom rnd) {
+        return library.getBookIdsByPopularity()[popularity.sample(rnd.nextDouble())];
+    }
+
+    private int randomUser(ThreadLocalRandom rnd) {
+        int[] users = library.getUserIds();
+        return users[rnd.nextInt(users.length)];
+    }
+
+    private int lentBook(ThreadLocalRandom rnd) {
+        Set<Integer> lent = library.getLentBookIds();
+        for (int i = 0; i < RETURN_PICK_ATTEMPTS; i++) {
+            int bookId = popularBook(rnd);
+            if (lent.contains(bookId)) return bookId;
+        }
+        Iterator<Integer> it = lent.iterator();
+        return it.hasNext() ? it.next() : popularBook(rnd);
+    }
+
+    private long databaseBytes() throws SQLException {
+        try (Connection conn = db.getReadConnection();
+             Statement st = conn.createStatement()) {
+            long pages, pageSize;
+            try (ResultSet rs = st.executeQuery("PRAGMA page_count")) {
+                pages = rs.next() ? rs.getLong(1) : 0;
+            }
+            try (ResultSet rs = st.executeQuery("PRAGMA page_size")) {
+                pageSize = rs.next() ? rs.getLong(1) : 0;
+            }
+            return pages * pageSize;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package edu.aitu.library.sim;
+
+import java.util.Arrays;
+
+public class ZipfDistribution {
+    private final double[] cdf;
+
+    public ZipfDistribution(int n, double exponent) {
+        if (n < 1) throw new IllegalArgumentException("Zipf distribution needs at least one element.");
+        if (exponent < 0) throw new IllegalArgumentException("Zipf exponent must not be negative: " + exponent);
+        cdf = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < n; k++) cdf[k] /= sum;
+    }
+
+    public int size() {
+        return cdf.length;
+    }
+
+    public int sample(double uniform) {
+        int i = Arrays.binarySearch(cdf, uniform);
+        if (i < 0) i = -i - 1;
+        return Math.min(i, cdf.length - 1);
+    }
+}